@@ -0,0 +1,286 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the tree of a commit as a tar, gzipped tar or zip archive.
+ *
+ *  Every file is streamed from its blob file into the archive through a
+ *  fixed buffer, so memory use does not depend on the size of the files.
+ *  A gzipped tar may be compressed in parallel: the tar stream is cut into
+ *  chunks which are compressed on the common fork/join pool as separate
+ *  gzip members, which gunzip reads as one stream, and at most a few
+ *  chunks per core are held at any time.
+ *  @author Lyrine Yang
+ */
+class Archive {
+
+    private static final int BLOCK_SIZE = 512;
+    /** Largest size and longest name a plain ustar header can hold. */
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+    private static final int MAX_USTAR_NAME = 100;
+    private static final int MAX_USTAR_PREFIX = 155;
+    /** Bytes of tar stream per gzip member when compressing in parallel. */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private Archive() {
+    }
+
+    /** Write TREE, whose blob files BLOBFILES finds, to OUT in FORMAT, with
+     *  MTIME (seconds since the epoch) as the time of every entry. */
+    static void write(Map<String, ObjectId> tree, Function<ObjectId, File> blobFiles,
+                      GitletRepository.ArchiveFormat format, boolean parallel,
+                      long mtime, OutputStream out) throws IOException {
+        if (format == GitletRepository.ArchiveFormat.ZIP) {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (Map.Entry<String, ObjectId> entry : tree.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                zipEntry.setTime(mtime * 1000);
+                zip.putNextEntry(zipEntry);
+                copyContent(blobFiles.apply(entry.getValue()), zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+            return;
+        }
+        OutputStream tarOut = out;
+        if (format == GitletRepository.ArchiveFormat.TAR_GZ) {
+            tarOut = parallel
+                    ? new ParallelGzipOutputStream(out) : new GZIPOutputStream(out, 1 << 16);
+        }
+        for (Map.Entry<String, ObjectId> entry : tree.entrySet()) {
+            File blobFile = blobFiles.apply(entry.getValue());
+            long size = contentSize(blobFile);
+            writeTarHeader(tarOut, entry.getKey(), size, mtime);
+            copyContent(blobFile, tarOut);
+            tarOut.write(new byte[padding(size)]);
+        }
+        /* two empty blocks end a tar archive */
+        tarOut.write(new byte[2 * BLOCK_SIZE]);
+        if (tarOut instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) tarOut).finish();
+        } else if (tarOut instanceof ParallelGzipOutputStream) {
+            ((ParallelGzipOutputStream) tarOut).finish();
+        }
+        out.flush();
+    }
+
+    /** Copy the content stored in BLOBFILE to OUT. */
+    private static void copyContent(File blobFile, OutputStream out) throws IOException {
+        try (FileChannel in = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+            long offset = Blob.contentOffset(in);
+            if (offset < 0) {
+                out.write(Utils.readObject(blobFile, Blob.class).getContent());
+                return;
+            }
+            in.position(offset);
+            InputStream content = Channels.newInputStream(in);
+            content.transferTo(out);
+        }
+    }
+
+    private static long contentSize(File blobFile) throws IOException {
+        try (FileChannel in = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+            long offset = Blob.contentOffset(in);
+            if (offset < 0) {
+                return Utils.readObject(blobFile, Blob.class).getContent().length;
+            }
+            return in.size() - offset;
+        }
+    }
+
+    private static int padding(long size) {
+        return (int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+    }
+
+    /** Write the header of a regular file NAME of SIZE bytes, preceded by
+     *  a pax header if a ustar header cannot hold the name or the size. */
+    private static void writeTarHeader(OutputStream out, String name, long size, long mtime)
+            throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int split = ustarSplit(nameBytes);
+        if (split < 0 || size > MAX_USTAR_SIZE) {
+            StringBuilder records = new StringBuilder();
+            if (split < 0) {
+                records.append(paxRecord("path", name));
+            }
+            if (size > MAX_USTAR_SIZE) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] recordBytes = records.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(header("PaxHeader".getBytes(StandardCharsets.US_ASCII), 0,
+                    recordBytes.length, mtime, (byte) 'x'));
+            out.write(recordBytes);
+            out.write(new byte[padding(recordBytes.length)]);
+        }
+        out.write(header(nameBytes, Math.max(split, 0), size > MAX_USTAR_SIZE ? 0 : size,
+                mtime, (byte) '0'));
+    }
+
+    /** Where NAME is cut into the prefix and name fields of a ustar header:
+     *  0 if it fits the name field, the index of the separating '/' if it
+     *  has to be cut, or -1 if it does not fit. */
+    private static int ustarSplit(byte[] name) {
+        if (name.length <= MAX_USTAR_NAME) {
+            return 0;
+        }
+        for (int i = name.length - 1; i > 0; i -= 1) {
+            if (name[i] == '/' && name.length - i - 1 <= MAX_USTAR_NAME) {
+                return i <= MAX_USTAR_PREFIX ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** A pax record "LENGTH KEY=VALUE\n", where LENGTH counts the whole record. */
+    private static String paxRecord(String key, String value) {
+        int rest = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = rest + Integer.toString(rest).length();
+        if (Integer.toString(length).length() > Integer.toString(rest).length()) {
+            length += 1;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    private static byte[] header(byte[] name, int split, long size, long mtime, byte type) {
+        byte[] header = new byte[BLOCK_SIZE];
+        if (split > 0) {
+            System.arraycopy(name, split + 1, header, 0, name.length - split - 1);
+            System.arraycopy(name, 0, header, 345, split);
+        } else {
+            System.arraycopy(name, 0, header, 0, Math.min(name.length, MAX_USTAR_NAME));
+        }
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, mtime);
+        header[156] = type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        /* the checksum is computed with its own field as spaces */
+        for (int i = 148; i < 156; i += 1) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /** Write VALUE as LENGTH - 1 octal digits and a NUL at OFFSET. */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int pad = length - 1 - digits.length();
+        for (int i = 0; i < length - 1; i += 1) {
+            header[offset + i] = (byte) (i < pad ? '0' : digits.charAt(i - pad));
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    /** Gzips what is written to it in chunks compressed in parallel, each
+     *  written to the underlying stream as its own gzip member, in order. */
+    private static class ParallelGzipOutputStream extends OutputStream {
+        /** Compressed chunks that may be pending at once. */
+        private final int maxPending = 2 * Runtime.getRuntime().availableProcessors();
+        private final OutputStream target;
+        private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int chunkLength;
+        private boolean wroteMember;
+
+        ParallelGzipOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, CHUNK_SIZE - chunkLength);
+                System.arraycopy(bytes, offset, chunk, chunkLength, n);
+                chunkLength += n;
+                offset += n;
+                length -= n;
+                if (chunkLength == CHUNK_SIZE) {
+                    submitChunk();
+                }
+            }
+        }
+
+        private void submitChunk() throws IOException {
+            byte[] input = chunk;
+            int inputLength = chunkLength;
+            pending.add(CompletableFuture.supplyAsync(() -> gzip(input, inputLength),
+                    ForkJoinPool.commonPool()));
+            chunk = new byte[CHUNK_SIZE];
+            chunkLength = 0;
+            while (pending.size() > maxPending) {
+                writeMember(pending.poll());
+            }
+        }
+
+        private void writeMember(CompletableFuture<byte[]> member) throws IOException {
+            try {
+                target.write(member.get());
+                wroteMember = true;
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new IOException(excp.getMessage());
+            }
+        }
+
+        private static byte[] gzip(byte[] input, int length) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(input, 0, length);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return compressed.toByteArray();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /** Write out every chunk, leaving the underlying stream open. */
+        void finish() throws IOException {
+            if (chunkLength > 0 || !wroteMember && pending.isEmpty()) {
+                submitChunk();
+            }
+            while (!pending.isEmpty()) {
+                writeMember(pending.poll());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+            target.close();
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package gitlet;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 /**
  *  @author Lyrine Yang
  */
 
 public class Blob implements Serializable {
+    /* pinned so that blobs written before any change of this class still load */
+    private static final long serialVersionUID = -725739676071921853L;
+
+    /* the serialized form of an empty blob: a blob file is these bytes, with
+    the last four holding the content length, followed by the raw content */
+    private static final byte[] EMPTY_BLOB = Utils.serialize(new Blob(new byte[0]));
+    /* the length of the bytes before the raw content of a blob file */
+    static final int HEADER_LENGTH = EMPTY_BLOB.length;
+
     private byte[] content;
     public Blob(byte[] byteContent) {
         content = byteContent;
@@ -14,4 +29,56 @@ public class Blob implements Serializable {
     public byte[] getContent() {
         return content;
     }
+
+    /**
+     * copy the content stored in blobFile into target with FileChannel.transferTo,
+     * without deserializing it onto the heap. Returns false, leaving target
+     * untouched, if blobFile does not have the layout of a serialized Blob.
+     */
+    static boolean transferContent(File blobFile, File target) {
+        try (FileChannel in = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+            long position = contentOffset(in);
+            if (position < 0) {
+                return false;
+            }
+            long size = in.size();
+            try (FileChannel out = FileChannel.open(target.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+            return true;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * the position of the raw content in the blob file open as in, which runs
+     * to the end of the file, or -1 if it is not laid out as a serialized Blob
+     */
+    static long contentOffset(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        while (header.hasRemaining() && in.read(header, header.position()) >= 0) {
+            continue;
+        }
+        if (header.hasRemaining() || !isHeader(header.array(), in.size())) {
+            return -1;
+        }
+        return HEADER_LENGTH;
+    }
+
+    /**
+     * whether header, the first HEADER_LENGTH bytes of a blob file of
+     * fileLength bytes, is that of a serialized Blob, so that the raw
+     * content follows it
+     */
+    static boolean isHeader(byte[] header, long fileLength) {
+        return header.length == HEADER_LENGTH
+                && Arrays.equals(header, 0, HEADER_LENGTH - 4, EMPTY_BLOB, 0, HEADER_LENGTH - 4)
+                && ByteBuffer.wrap(header).getInt(HEADER_LENGTH - 4)
+                        == fileLength - HEADER_LENGTH;
+    }
 }
@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/** A file holding the commits and blobs of a branch which are not reachable
+ *  from a base commit, for backups and offline transfer.
+ *
+ *  A bundle is the magic "GLBD" and a version, then its header: the ID of
+ *  the base commit ("" if it has none), the branch name and the ID of the
+ *  branch head. A pack of the objects follows, which carries its own
+ *  checksum. A repository can import a bundle if it has the base commit,
+ *  since it then has every object reachable from it.
+ *  @author Lyrine Yang
+ */
+class Bundle {
+
+    private static final byte[] MAGIC = "GLBD".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    /** The commit the objects of the bundle build on, or "" for none. */
+    private final String baseID;
+    private final String branchName;
+    private final String headID;
+    /** The objects a read() stored which the repository did not have. */
+    private Pack.Contents storedObjects = new Pack.Contents();
+
+    Bundle(String baseID, String branchName, String headID) {
+        this.baseID = baseID;
+        this.branchName = branchName;
+        this.headID = headID;
+    }
+
+    String getBaseID() {
+        return baseID;
+    }
+
+    String getBranchName() {
+        return branchName;
+    }
+
+    String getHeadID() {
+        return headID;
+    }
+
+    Pack.Contents getStoredObjects() {
+        return storedObjects;
+    }
+
+    /** Write this bundle of OBJECTS of the gitlet directory FROM to
+     *  BUNDLEFILE, replacing it only once the whole bundle is written. */
+    void write(File from, Pack.Contents objects, File bundleFile) {
+        File temp = new File(bundleFile.getAbsoluteFile().getParentFile(),
+                "." + bundleFile.getName() + ".tmp" + System.nanoTime());
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.write(MAGIC);
+                data.writeInt(VERSION);
+                data.writeUTF(baseID);
+                data.writeUTF(branchName);
+                data.writeUTF(headID);
+                data.flush();
+                Pack.write(from, objects, out);
+            }
+            if (!temp.renameTo(bundleFile)) {
+                throw Utils.error("Cannot write bundle %s.", bundleFile.getPath());
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write bundle: %s", excp.getMessage());
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Read the bundle in BUNDLEFILE in one pass, storing each object in the
+     *  gitlet directory TO as soon as it is verified. HASBASE is asked
+     *  whether TO has the base commit before any object is stored. Throws a
+     *  GitletException if the bundle does not match its checksum, after
+     *  which TO may hold some of its objects, but no branch points at them. */
+    static Bundle read(File bundleFile, File to, Predicate<String> hasBase) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(bundleFile))) {
+            DataInputStream data = new DataInputStream(in);
+            byte[] magic = data.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || data.readInt() != VERSION) {
+                throw Utils.error("Not a gitlet bundle.");
+            }
+            Bundle bundle = new Bundle(data.readUTF(), data.readUTF(), data.readUTF());
+            if (!bundle.baseID.isEmpty() && !hasBase.test(bundle.baseID)) {
+                throw Utils.error("Bundle requires commit %s.", bundle.baseID);
+            }
+            bundle.storedObjects = Pack.read(in, to);
+            return bundle;
+        } catch (EOFException excp) {
+            throw Utils.error("Bundle is truncated.");
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read bundle: %s", excp.getMessage());
+        }
+    }
+}
@@ -1,6 +1,15 @@
 package gitlet;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TreeMap;
 
 
@@ -11,20 +20,31 @@ import java.util.TreeMap;
  */
 public class Commit implements Serializable {
 
+    /* pinned so that commits written before any change of this class still load */
+    private static final long serialVersionUID = 6314940694916828326L;
+
+    /* how log prints the time of a commit; DateTimeFormatter is thread-safe */
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z", Locale.US);
 
     private final String parentID;
     /** The message of this Commit. */
     private final String commitMessage;
-    private final String timeStamp;
+    /* the formatted time of commits written before epochMillis, null since */
+    private String timeStamp;
+    /* the commit time, and the offset of the zone it was made in, in seconds */
+    private long epochMillis;
+    private int zoneOffsetSeconds;
     private final String secondParentID;
-    private TreeMap<String, String> nameIDMap;
-    public Commit(String p, String c, String t) {
+    private TreeMap<String, ObjectId> nameIDMap;
+    public Commit(String p, String c, OffsetDateTime t) {
         this(p, c, t, null);
     }
-    public Commit(String p, String c, String t, String secondParentID) {
+    public Commit(String p, String c, OffsetDateTime t, String secondParentID) {
         parentID = p;
         commitMessage = c;
-        timeStamp = t;
+        epochMillis = t.toInstant().toEpochMilli();
+        zoneOffsetSeconds = t.getOffset().getTotalSeconds();
         this.secondParentID = secondParentID;
         this.nameIDMap = new TreeMap<>();
     }
@@ -34,18 +54,50 @@ public class Commit implements Serializable {
     public String getCommitMessage() {
         return commitMessage;
     }
+    /** The commit time as log prints it, formatted only when asked for. */
     public String getTimeStamp() {
-        return timeStamp;
+        if (timeStamp != null) {
+            return timeStamp;
+        }
+        return TIME_FORMAT.format(OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis),
+                ZoneOffset.ofTotalSeconds(zoneOffsetSeconds)));
+    }
+
+    /** The commit time in milliseconds since the epoch. */
+    public long getEpochMillis() {
+        return epochMillis;
     }
 
     public String getSecondParentID() {
         return secondParentID;
     }
 
-    public TreeMap<String, String> getNameIDMap() {
+    public TreeMap<String, ObjectId> getNameIDMap() {
         return nameIDMap;
     }
-    public void loadParentCommitMap(Commit this, TreeMap<String, String> parentCommitMap) {
+    public void loadParentCommitMap(Commit this, TreeMap<String, ObjectId> parentCommitMap) {
         this.nameIDMap = new TreeMap<>(parentCommitMap);
     }
+
+    /* commits written before ObjectId map file names to hex strings, and
+    those written before epochMillis only have the formatted time */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (timeStamp != null) {
+            try {
+                OffsetDateTime time = OffsetDateTime.parse(timeStamp, TIME_FORMAT);
+                epochMillis = time.toInstant().toEpochMilli();
+                zoneOffsetSeconds = time.getOffset().getTotalSeconds();
+            } catch (DateTimeParseException excp) {
+                epochMillis = 0;
+            }
+        }
+        Map<String, Object> map = (Map<String, Object>) (Map<?, ?>) nameIDMap;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                entry.setValue(ObjectId.fromHex((String) entry.getValue()));
+            }
+        }
+    }
 }
@@ -0,0 +1,199 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/** The commit-graph side file of a gitlet directory: for each commit its
+ *  parents and a Bloom filter of the paths it changed relative to its first
+ *  parent, so history walks and per-file queries skip most commit files.
+ *
+ *  The file is a sequence of records, appended when a commit is made or
+ *  received: the commit ID, the parent and second parent IDs (all zero if
+ *  absent), the number of filter words and the words. A commit missing
+ *  from the file (cloned, or made before the file existed) simply has no
+ *  entry.
+ *  @author Lyrine Yang
+ */
+class CommitGraph {
+
+    /** Written in place of a missing parent. */
+    private static final ObjectId NO_PARENT = new ObjectId(0, 0, 0);
+    /** Filter bits per changed path and number of bits set per path. */
+    private static final int BITS_PER_PATH = 10;
+    private static final int HASHES = 7;
+
+    private final File graphFile;
+    /** The records of graphFile, read on first use. */
+    private HashMap<ObjectId, Entry> entries;
+
+    /** The record of one commit. */
+    static class Entry {
+        private final ObjectId parentID;
+        private final ObjectId secondParentID;
+        private final long[] filter;
+
+        Entry(ObjectId parentID, ObjectId secondParentID, long[] filter) {
+            this.parentID = parentID;
+            this.secondParentID = secondParentID;
+            this.filter = filter;
+        }
+
+        /** The first parent, or null for a root commit. */
+        ObjectId getParentID() {
+            return parentID;
+        }
+
+        ObjectId getSecondParentID() {
+            return secondParentID;
+        }
+
+        /** False only if the commit certainly did not change PATH. */
+        boolean mightHaveChanged(String path) {
+            int bits = filter.length * 64;
+            int h1 = path.hashCode();
+            int h2 = secondHash(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    CommitGraph(File gitletDir) {
+        graphFile = Utils.join(gitletDir, "commit-graph");
+    }
+
+    /** Return the entry of COMMITID, or null if the file has none. Readers
+     *  and the writer of a repository may share one instance. */
+    synchronized Entry get(ObjectId commitID) {
+        if (entries == null) {
+            entries = readEntries();
+        }
+        return entries.get(commitID);
+    }
+
+    boolean contains(ObjectId commitID) {
+        return get(commitID) != null;
+    }
+
+    /** Append the entry of COMMIT, named COMMITID, which changed CHANGEDPATHS
+     *  relative to its first parent. */
+    synchronized void add(ObjectId commitID, Commit commit, Collection<String> changedPaths) {
+        Entry entry = new Entry(parentID(commit.getParentID()),
+                parentID(commit.getSecondParentID()), buildFilter(changedPaths));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(graphFile, true)))) {
+            writeID(out, commitID);
+            writeID(out, entry.parentID);
+            writeID(out, entry.secondParentID);
+            out.writeInt(entry.filter.length);
+            for (long word : entry.filter) {
+                out.writeLong(word);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (entries != null) {
+            entries.put(commitID, entry);
+        }
+    }
+
+    /** The paths COMMIT changed relative to PARENTMAP, the file map of its
+     *  first parent, or an empty map if it has none. */
+    static Set<String> changedPaths(Map<String, ObjectId> parentMap, Commit commit) {
+        Set<String> changedPaths = new HashSet<>(parentMap.keySet());
+        changedPaths.addAll(commit.getNameIDMap().keySet());
+        changedPaths.removeIf(path ->
+                Objects.equals(parentMap.get(path), commit.getNameIDMap().get(path)));
+        return changedPaths;
+    }
+
+    private static ObjectId parentID(String parentID) {
+        return parentID == null ? null : ObjectId.fromHex(parentID);
+    }
+
+    private static long[] buildFilter(Collection<String> paths) {
+        int words = Math.max(1, (paths.size() * BITS_PER_PATH + 63) / 64);
+        long[] filter = new long[words];
+        int bits = words * 64;
+        for (String path : paths) {
+            int h1 = path.hashCode();
+            int h2 = secondHash(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                filter[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return filter;
+    }
+
+    /** FNV-1a of the UTF-8 bytes of PATH, forced odd so that the probes of
+     *  double hashing never repeat early. */
+    private static int secondHash(String path) {
+        int hash = 0x811c9dc5;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash | 1;
+    }
+
+    private HashMap<ObjectId, Entry> readEntries() {
+        HashMap<ObjectId, Entry> result = new HashMap<>();
+        if (!graphFile.isFile()) {
+            return result;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(graphFile)))) {
+            while (true) {
+                ObjectId commitID;
+                try {
+                    commitID = readID(in);
+                } catch (EOFException excp) {
+                    break;
+                }
+                ObjectId parentID = readID(in);
+                ObjectId secondParentID = readID(in);
+                long[] filter = new long[in.readInt()];
+                for (int i = 0; i < filter.length; i += 1) {
+                    filter[i] = in.readLong();
+                }
+                result.put(commitID, new Entry(parentID, secondParentID, filter));
+            }
+        } catch (EOFException excp) {
+            /* a record cut short by an interrupted append is ignored */
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    private static void writeID(DataOutputStream out, ObjectId id) throws IOException {
+        ObjectId written = id == null ? NO_PARENT : id;
+        out.writeLong(written.first());
+        out.writeLong(written.second());
+        out.writeInt(written.third());
+    }
+
+    private static ObjectId readID(DataInputStream in) throws IOException {
+        ObjectId id = new ObjectId(in.readLong(), in.readLong(), in.readInt());
+        return id.equals(NO_PARENT) ? null : id;
+    }
+}
@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The settings of a gitlet directory, kept as "key=value" lines in its
+ *  config file. A setting which is not in the file has its default value.
+ *  @author Lyrine Yang
+ */
+class Config {
+
+    /** "none" (the default) writes files without forcing them to disk;
+     *  "batch" forces the new objects of a command to disk together before
+     *  the ref or index which refers to them is replaced. */
+    static final String DURABILITY = "durability";
+
+    /** The least share of common lines, in percent, of a file removed and
+     *  a file added on one side of a merge for merge to treat them as a
+     *  rename; 100 detects only renames of unchanged files. */
+    static final String RENAME_THRESHOLD = "renameThreshold";
+
+    private final File configFile;
+
+    Config(File gitletDir) {
+        configFile = Utils.join(gitletDir, "config");
+    }
+
+    /** Return the value of KEY, or DEFAULTVALUE if it is not set. */
+    String get(String key, String defaultValue) {
+        return read().getOrDefault(key, defaultValue);
+    }
+
+    /** Set KEY to VALUE, or remove it if VALUE is null. */
+    void set(String key, String value) {
+        TreeMap<String, String> settings = read();
+        if (value == null) {
+            settings.remove(key);
+        } else {
+            settings.put(key, value);
+        }
+        StringBuilder contents = new StringBuilder();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            contents.append(setting.getKey()).append('=').append(setting.getValue()).append('\n');
+        }
+        Utils.atomicWriteContents(configFile, contents.toString());
+    }
+
+    private TreeMap<String, String> read() {
+        TreeMap<String, String> settings = new TreeMap<>();
+        if (!configFile.isFile()) {
+            return settings;
+        }
+        for (String line : Utils.readContentsAsString(configFile).split("\n")) {
+            int separator = line.indexOf('=');
+            if (separator > 0) {
+                settings.put(line.substring(0, separator).trim(),
+                        line.substring(separator + 1).trim());
+            }
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,284 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Checks the object store of a gitlet directory: every object file must
+ *  hash to its name, every branch must lead to commits whose parents and
+ *  blobs exist, and objects neither a branch nor the staging area reaches
+ *  are reported as dangling. The branches and the staging area are read
+ *  before the objects are listed, so that the objects of a command running
+ *  meanwhile are never reported missing.
+ *
+ *  Objects are re-hashed in parallel on one thread per core. Each thread
+ *  streams files through a fixed buffer, so memory use does not grow with
+ *  the size of the blobs. The reachability walk that follows runs on one
+ *  thread; it reads commit files only, never a blob.
+ *  @author Lyrine Yang
+ */
+public class Fsck {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** How the staging area marks a file staged for removal. */
+    private static final String DELETE_MARKER = new ObjectId(0, 0, 0).toHex();
+
+    /** What a check found, in the order it should be reported. */
+    public static class Report {
+        private final List<String> problems = new ArrayList<>();
+        private long objects;
+        private long bytes;
+        private long millis;
+
+        /** One line per corrupt, missing or dangling object. */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        public long getObjects() {
+            return objects;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final File commitsDir;
+    private final File blobsDir;
+    private final File indexFile;
+    private final Refs refs;
+    /** Where the blobs of a lazy clone live, or null. */
+    private final File lazySourceDir;
+
+    Fsck(File gitletDir) {
+        commitsDir = Utils.join(gitletDir, "objects", "commits");
+        blobsDir = Utils.join(gitletDir, "objects", "blobs");
+        indexFile = Utils.join(gitletDir, "index");
+        refs = new Refs(gitletDir);
+        File lazySource = Utils.join(gitletDir, "lazy-source");
+        lazySourceDir = lazySource.exists()
+                ? new File(Utils.readContentsAsString(lazySource)) : null;
+    }
+
+    Report check() {
+        long start = System.currentTimeMillis();
+        Report report = new Report();
+        Map<String, String> branches = refs.list();
+        Map<String, String> stagedBlobs = readStagedBlobs();
+        List<String> commitIDs = objectNames(commitsDir);
+        List<String> blobIDs = objectNames(blobsDir);
+
+        ConcurrentLinkedQueue<String> corrupt = new ConcurrentLinkedQueue<>();
+        LongAdder bytes = new LongAdder();
+        rehash(commitIDs, blobIDs, corrupt, bytes);
+        TreeSet<String> sortedCorrupt = new TreeSet<>(corrupt);
+        report.problems.addAll(sortedCorrupt);
+
+        Set<String> commits = new HashSet<>(commitIDs);
+        Set<String> blobs = new HashSet<>(blobIDs);
+        Set<String> reachableCommits = new HashSet<>();
+        Set<String> reachableBlobs = new HashSet<>();
+        for (Map.Entry<String, String> staged : stagedBlobs.entrySet()) {
+            String blobID = staged.getValue();
+            if (blobs.contains(blobID)) {
+                reachableBlobs.add(blobID);
+            } else if (!inLazySource(blobID)) {
+                report.problems.add("missing blob " + blobID
+                        + " (staged for " + staged.getKey() + ")");
+            }
+        }
+        walk(branches, commits, blobs, reachableCommits, reachableBlobs, report);
+
+        for (String commitID : commitIDs) {
+            if (!reachableCommits.contains(commitID)) {
+                report.problems.add("dangling commit " + commitID);
+            }
+        }
+        for (String blobID : blobIDs) {
+            if (!reachableBlobs.contains(blobID)) {
+                report.problems.add("dangling blob " + blobID);
+            }
+        }
+        report.objects = commitIDs.size() + blobIDs.size();
+        report.bytes = bytes.sum();
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /** Hash every object file in parallel, adding a problem line for each
+     *  one whose content does not match its name to CORRUPT. */
+    private void rehash(List<String> commitIDs, List<String> blobIDs,
+                        ConcurrentLinkedQueue<String> corrupt, LongAdder bytes) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        ThreadLocal<ByteBuffer> buffers =
+                ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+        try {
+            pool.submit(() -> {
+                commitIDs.parallelStream().forEach(commitID -> {
+                    File file = Utils.join(commitsDir, commitID);
+                    if (!commitID.equals(streamSha1(file, false, buffers.get(), bytes))) {
+                        corrupt.add("corrupt commit " + commitID);
+                    }
+                });
+                blobIDs.parallelStream().forEach(blobID -> {
+                    File file = Utils.join(blobsDir, blobID);
+                    if (!blobID.equals(streamSha1(file, true, buffers.get(), bytes))) {
+                        corrupt.add("corrupt blob " + blobID);
+                    }
+                });
+            }).get();
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Return the SHA-1 of FILE, or of the content stored in it if ISBLOB,
+     *  read through BUFFER. Returns null if the file cannot be read or is
+     *  not laid out as a blob. */
+    private static String streamSha1(File file, boolean isBlob, ByteBuffer buffer,
+                                     LongAdder bytes) {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            if (isBlob) {
+                /* every blob is written with the same header, so any other
+                layout is itself corruption */
+                position = Blob.contentOffset(in);
+                if (position < 0) {
+                    return null;
+                }
+            }
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            in.position(position);
+            buffer.clear();
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+            bytes.add(in.size());
+            return ObjectId.fromBytes(md.digest()).toHex();
+        } catch (IOException | IllegalArgumentException | NoSuchAlgorithmException excp) {
+            return null;
+        }
+    }
+
+    /** Follow every branch of BRANCHES through parents and file maps,
+     *  recording what is reachable and reporting what is missing. */
+    private void walk(Map<String, String> branches, Set<String> commits, Set<String> blobs,
+                      Set<String> reachableCommits, Set<String> reachableBlobs,
+                      Report report) {
+        ArrayDeque<String> toVisit = new ArrayDeque<>();
+        for (Map.Entry<String, String> branch : branches.entrySet()) {
+            if (!commits.contains(branch.getValue())) {
+                report.problems.add("missing commit " + branch.getValue()
+                        + " (branch " + branch.getKey() + ")");
+            } else {
+                toVisit.push(branch.getValue());
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            String commitID = toVisit.pop();
+            if (!reachableCommits.add(commitID)) {
+                continue;
+            }
+            Commit commit;
+            try {
+                commit = Utils.readObject(Utils.join(commitsDir, commitID), Commit.class);
+            } catch (IllegalArgumentException excp) {
+                /* already reported as corrupt */
+                continue;
+            }
+            for (String parentID : parentIDs(commit)) {
+                if (!commits.contains(parentID)) {
+                    report.problems.add("missing commit " + parentID
+                            + " (parent of " + commitID + ")");
+                } else {
+                    toVisit.push(parentID);
+                }
+            }
+            for (ObjectId blobID : commit.getNameIDMap().values()) {
+                String blobName = blobID.toHex();
+                if (blobs.contains(blobName)) {
+                    reachableBlobs.add(blobName);
+                } else if (!reachableBlobs.contains(blobName) && !inLazySource(blobName)) {
+                    reachableBlobs.add(blobName);
+                    report.problems.add("missing blob " + blobName
+                            + " (in commit " + commitID + ")");
+                }
+            }
+        }
+    }
+
+    /** The IDs of the blobs staged for addition, by file name. */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> readStagedBlobs() {
+        Map<String, String> stagedBlobs = new TreeMap<>();
+        if (indexFile.exists()) {
+            Map<String, Object> stagingArea = Utils.readObject(indexFile, HashMap.class);
+            for (Map.Entry<String, Object> entry : stagingArea.entrySet()) {
+                /* index files written before ObjectId hold hex strings */
+                String blobID = entry.getValue().toString();
+                if (blobID.length() == Utils.UID_LENGTH && !blobID.equals(DELETE_MARKER)) {
+                    stagedBlobs.put(entry.getKey(), blobID);
+                }
+            }
+        }
+        return stagedBlobs;
+    }
+
+    private boolean inLazySource(String blobID) {
+        return lazySourceDir != null && Pack.findBlobFile(lazySourceDir, blobID).exists();
+    }
+
+    private static List<String> parentIDs(Commit commit) {
+        List<String> parentIDs = new ArrayList<>(2);
+        if (commit.getParentID() != null) {
+            parentIDs.add(commit.getParentID());
+        }
+        if (commit.getSecondParentID() != null) {
+            parentIDs.add(commit.getSecondParentID());
+        }
+        return parentIDs;
+    }
+
+    /** The object files of DIR, leaving out temporary files of writes in progress. */
+    private static List<String> objectNames(File dir) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        List<String> objectNames = new ArrayList<>();
+        for (String name : names) {
+            if (!name.startsWith(".")) {
+                objectNames.add(name);
+            }
+        }
+        return objectNames;
+    }
+}
@@ -0,0 +1,1848 @@
+package gitlet;
+
+import static gitlet.Utils.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/** A gitlet repository opened on a working directory.
+ *  Includes the file paths of its gitlet directory and implements the gitlet
+ *  commands on them. Commands return their results instead of printing them
+ *  and throw a GitletException, whose message is the one the command line
+ *  prints, instead of exiting, so many repositories can be used from one JVM.
+ *  Every instance keeps its own state: instances on different repositories
+ *  may be used from different threads at once. Commands which change the
+ *  repository are synchronized on the instance and hold its WriterLock, so
+ *  writers in other threads, instances and processes wait their turn, while
+ *  log, global-log, find, status and fsck take neither and never wait: every
+ *  file is replaced by an atomic rename.
+ *  .gitlet/
+ *        - objects/
+ *            - commits/
+ *                - ...(files of commits)
+ *            - blobs/
+ *                - ...(files of blobs)
+ *        - branches/
+ *            - master
+ *            - ...(other branches, loose refs override packed-refs)
+ *        - packed-refs
+ *        - remotes/
+ *            - ...(files holding the path of each remote .gitlet directory)
+ *        - lazy-source (only in lazy clones: where blobs not in the head
+ *          commit at clone time are linked from on first use)
+ *        - HEAD
+ *        - index/
+ *        - commit-graph (parents and changed-path Bloom filters of commits)
+ *        - time-index (commit times, for date-range queries)
+ *
+ *  @author Lyrine Yang
+ */
+public class GitletRepository implements Closeable {
+
+    /* staged in place of a blobID for a file staged for removal */
+    private static final ObjectId DELETE_MARKER = new ObjectId(0, 0, 0);
+
+    /** The working directory. */
+    private final File workingDir;
+    /** The .gitlet directory. */
+    private final File gitletDir;
+    private final File objectsDir;
+    private final File commitsDir;
+    private final File blobsDir;
+    private final File headFile;
+    private final File indexFile;
+    private final File branchesDir;
+    private final Refs refs;
+    private final File remotesDir;
+    private final File lazySourceFile;
+    private final CommitGraph commitGraph;
+    private final TimeIndex timeIndex;
+    private final Maintenance maintenance;
+    /* held by every command which changes the repository */
+    private final WriterLock writerLock;
+    private final Config config;
+    /* the new files of the running command, forced to disk in durability mode
+    "batch"; only used by writers, which hold the monitor of this instance */
+    private WriteBatch writeBatch = new WriteBatch(false);
+    /* the refs, HEAD and index before a bulk import, while one is running */
+    private final File importJournalFile;
+    private boolean importing;
+    /* tracks the untracked files of workingDir between commands, if started;
+    set by writers, read by status without the monitor of this instance */
+    private volatile WorkingTreeWatcher workingTreeWatcher;
+
+    /** A commit of a log, global-log or find, with its ID. */
+    public static final class LogEntry {
+        private final String commitID;
+        private final Commit commit;
+
+        LogEntry(String commitID, Commit commit) {
+            this.commitID = commitID;
+            this.commit = commit;
+        }
+
+        public String getCommitID() {
+            return commitID;
+        }
+
+        public Commit getCommit() {
+            return commit;
+        }
+    }
+
+    /** The branches, staging area and untracked files of a repository. */
+    public static final class Status {
+        private final String activeBranch;
+        private final List<String> branches;
+        private final List<String> stagedFiles = new ArrayList<>();
+        private final List<String> removedFiles = new ArrayList<>();
+        private final List<String> untrackedFiles;
+
+        Status(String activeBranch, List<String> branches, List<String> untrackedFiles) {
+            this.activeBranch = activeBranch;
+            this.branches = branches;
+            this.untrackedFiles = untrackedFiles;
+        }
+
+        public String getActiveBranch() {
+            return activeBranch;
+        }
+
+        /** All branch names, sorted. */
+        public List<String> getBranches() {
+            return branches;
+        }
+
+        public List<String> getStagedFiles() {
+            return stagedFiles;
+        }
+
+        public List<String> getRemovedFiles() {
+            return removedFiles;
+        }
+
+        public List<String> getUntrackedFiles() {
+            return untrackedFiles;
+        }
+    }
+
+    /** How a merge ended. */
+    public enum MergeResult {
+        /* the given branch is an ancestor of the current one; nothing changed */
+        ALREADY_MERGED,
+        FAST_FORWARDED,
+        MERGED,
+        /* merged with conflict markers written into the conflicted files */
+        CONFLICTED
+    }
+
+    /** The kinds of archive archive() writes. */
+    public enum ArchiveFormat {
+        TAR,
+        TAR_GZ,
+        ZIP;
+
+        /** The format named by the extension of FILENAME: .zip, .tar.gz or
+         *  .tgz, and tar for anything else. */
+        public static ArchiveFormat forFileName(String fileName) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".zip")) {
+                return ZIP;
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                return TAR_GZ;
+            }
+            return TAR;
+        }
+    }
+
+    /**
+     * the repository whose working directory is workingDir, which need not
+     * be initialized yet (see init and cloneRepository)
+     */
+    public GitletRepository(File workingDir) {
+        this.workingDir = workingDir.getAbsoluteFile();
+        gitletDir = join(this.workingDir, ".gitlet");
+        objectsDir = join(gitletDir, "objects");
+        commitsDir = join(objectsDir, "commits");
+        blobsDir = join(objectsDir, "blobs");
+        headFile = join(gitletDir, "HEAD");
+        indexFile = join(gitletDir, "index");
+        branchesDir = join(gitletDir, "branches");
+        refs = new Refs(gitletDir);
+        remotesDir = join(gitletDir, "remotes");
+        lazySourceFile = join(gitletDir, "lazy-source");
+        commitGraph = new CommitGraph(gitletDir);
+        timeIndex = new TimeIndex(gitletDir);
+        maintenance = new Maintenance(gitletDir);
+        writerLock = WriterLock.of(gitletDir);
+        config = new Config(gitletDir);
+        importJournalFile = join(gitletDir, "import-journal");
+    }
+
+    /**
+     * open the initialized repository whose working directory is workingDir
+     */
+    public static GitletRepository open(File workingDir) {
+        GitletRepository repository = new GitletRepository(workingDir);
+        if (!repository.isInitialized()) {
+            throw error("Not in an initialized Gitlet directory.");
+        }
+        return repository;
+    }
+
+    public File getWorkingDir() {
+        return workingDir;
+    }
+
+    public boolean isInitialized() {
+        return gitletDir.exists();
+    }
+
+    /**
+     * take the writer lock; the outermost command of a thread also rolls
+     * back a bulk import whose process died, and reads the durability mode
+     */
+    private void lockForWriting() {
+        writerLock.lock();
+        if (writerLock.getHoldCount() > 1) {
+            return;
+        }
+        try {
+            if (importJournalFile.exists()) {
+                rollBackImport();
+            }
+            boolean durable = config.get(Config.DURABILITY, "none").equals("batch");
+            writeBatch = new WriteBatch(durable);
+            refs.setSync(durable);
+        } catch (RuntimeException excp) {
+            writerLock.unlock();
+            throw excp;
+        }
+    }
+
+    /**
+     * replace a file of the gitlet directory, forcing it to disk in
+     * durability mode "batch"
+     */
+    private void replaceFile(File file, Object... contents) {
+        if (writeBatch.isDurable()) {
+            syncedWriteContents(file, contents);
+        } else {
+            atomicWriteContents(file, contents);
+        }
+    }
+
+    /**
+     * the value of a setting of the config file, or null if it is not set
+     */
+    public String getConfig(String key) {
+        return config.get(key, null);
+    }
+
+    public synchronized void setConfig(String key, String value) {
+        if (key.equals(Config.DURABILITY)
+                && !value.equals("none") && !value.equals("batch")) {
+            throw error("Durability must be none or batch.");
+        }
+        if (key.equals(Config.RENAME_THRESHOLD) && !value.matches("100|[1-9]?[0-9]")) {
+            throw error("Rename threshold must be a percentage from 0 to 100.");
+        }
+        lockForWriting();
+        try {
+            config.set(key, value);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /** What a bulk import restores if its process dies before it ends. */
+    private static class ImportJournal implements Serializable {
+        /* pinned so that a journal left by an earlier build is still rolled back */
+        private static final long serialVersionUID = 4998262726783296329L;
+        private String head;
+        private TreeMap<String, String> branches;
+        private byte[] index;
+    }
+
+    /**
+     * start a bulk import: until endBulkImport, which the same thread must
+     * call, this thread holds the writer lock and no command forces anything
+     * to disk. endBulkImport forces every new object, then the refs, HEAD and
+     * index, at once. If the process dies before, the next writer restores
+     * the refs, HEAD and index as they were before the import
+     */
+    public synchronized void beginBulkImport() {
+        lockForWriting();
+        try {
+            if (importing) {
+                throw error("A bulk import is already running.");
+            }
+            ImportJournal journal = new ImportJournal();
+            journal.head = readContentsAsString(headFile);
+            journal.branches = refs.list();
+            journal.index = readContents(indexFile);
+            syncedWriteContents(importJournalFile, serialize(journal));
+        } catch (RuntimeException excp) {
+            writerLock.unlock();
+            throw excp;
+        }
+        importing = true;
+        writeBatch.startDeferring();
+        refs.setSync(false);
+    }
+
+    public synchronized void endBulkImport() {
+        if (!importing) {
+            throw error("No bulk import is running.");
+        }
+        try {
+            for (File refFile : refs.files()) {
+                writeBatch.add(refFile);
+            }
+            writeBatch.add(headFile);
+            writeBatch.add(indexFile);
+            writeBatch.endDeferring();
+            importJournalFile.delete();
+            force(gitletDir);
+        } finally {
+            importing = false;
+            writerLock.unlock();
+        }
+    }
+
+    private void rollBackImport() {
+        ImportJournal journal = readObject(importJournalFile, ImportJournal.class);
+        refs.setSync(true);
+        refs.writeAll(journal.branches);
+        syncedWriteContents(headFile, journal.head);
+        syncedWriteContents(indexFile, journal.index);
+        importJournalFile.delete();
+        force(gitletDir);
+    }
+
+    /**
+     * to create the gitlet directory and the file structure
+     */
+    public synchronized void init() {
+        if (gitletDir.exists()) {
+            throw error("A Gitlet version-control system"
+                    + " already exists in the current directory.");
+        }
+        setupPersistence();
+        /* create the first default commit */
+        Commit initialCommit = new Commit(null, "initial commit",
+                OffsetDateTime.ofInstant(Instant.EPOCH, ZoneId.systemDefault()));
+        String initialCommitID = sha1(serialize(initialCommit));
+        File initialCommitFile = join(commitsDir, initialCommitID);
+        atomicWriteObject(initialCommitFile, initialCommit);
+        commitGraph.add(ObjectId.fromHex(initialCommitID), initialCommit, List.of());
+        timeIndex.rewrite(Map.of(ObjectId.fromHex(initialCommitID),
+                initialCommit.getEpochMillis()));
+
+        /* build up the branch structure by create branch file and the HEAD file */
+        /* make branch file hold the branch new commitID */
+        refs.write("master", initialCommitID);
+        /* make HEAD file hold the working branch information */
+        atomicWriteContents(headFile, "master");
+        maintenance.recordFresh();
+    }
+
+    /**
+     * build up the gitlet directory structure and store new hashmap in index file
+     */
+    private void setupPersistence() {
+        gitletDir.mkdir();
+        objectsDir.mkdir();
+        commitsDir.mkdir();
+        blobsDir.mkdir();
+        branchesDir.mkdir();
+        try {
+            headFile.createNewFile();
+            indexFile.createNewFile();
+            writeStagingArea(new HashMap<>());
+        } catch (IOException excp) {
+            throw new RuntimeException(excp);
+        }
+    }
+
+    /**
+     * add the file need to add to blobs directory and add the key-value to index.
+     * a directory adds every file under it which is not ignored
+     */
+    public synchronized void add(String fileName) {
+        lockForWriting();
+        try {
+            String addName = trackedName(fileName);
+            File fileToAdd = join(workingDir, addName);
+            if (!fileToAdd.exists()) {
+                throw error("File does not exist.");
+            }
+            List<String> fileNames;
+            if (fileToAdd.isDirectory()) {
+                fileNames = new WorkingTreeScanner(workingDir).scan(addName);
+            } else {
+                fileNames = List.of(addName);
+            }
+
+            /* inverse serialize the index map from index file */
+            HashMap<String, ObjectId> stagingArea = readStagingArea();
+            Commit headCommit = getBranchHeadCommit(readContentsAsString(headFile));
+            boolean stagingAreaChanged = false;
+            for (String name : fileNames) {
+                stagingAreaChanged |= stageFile(name, stagingArea, headCommit.getNameIDMap());
+            }
+            if (stagingAreaChanged) {
+                writeBatch.sync();
+                writeStagingArea(stagingArea);
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * put the working version of fileName into stagingArea, returns whether it changed
+     */
+    private boolean stageFile(String fileName, HashMap<String, ObjectId> stagingArea,
+                              TreeMap<String, ObjectId> headCommitMap) {
+        /* get the content of the file needed to add */
+        byte[] fileToAddContent = readContents(join(workingDir, fileName));
+        ObjectId blobID = ObjectId.sha1(fileToAddContent);
+
+        /* check whether current working version of the file is identical */
+        if (blobID.equals(headCommitMap.get(fileName))) {
+            return stagingArea.remove(fileName) != null;
+        }
+        /* add addFile content to blobs directory */
+        File blobFile = join(blobsDir, blobID.toHex());
+        if (!blobFile.exists()) {
+            Blob addBlob = new Blob(fileToAddContent);
+            atomicWriteObject(blobFile, addBlob);
+            writeBatch.add(blobFile);
+            maintenance.recordNewObjects(1);
+        }
+        /* add the addFile blob pointer to index map */
+        return !blobID.equals(stagingArea.put(fileName, blobID));
+    }
+
+    /**
+     * read the staging area: file name -> blobID staged, or DELETE_MARKER
+     */
+    @SuppressWarnings("unchecked")
+    private HashMap<String, ObjectId> readStagingArea() {
+        HashMap<String, Object> stagingArea = readObject(indexFile, HashMap.class);
+        HashMap<String, ObjectId> result = new HashMap<>();
+        for (Map.Entry<String, Object> entry : stagingArea.entrySet()) {
+            Object blobID = entry.getValue();
+            /* index files written before ObjectId hold hex strings */
+            if (blobID instanceof String) {
+                blobID = blobID.equals("DELETE_FILE")
+                        ? DELETE_MARKER : ObjectId.fromHex((String) blobID);
+            }
+            result.put(entry.getKey(), (ObjectId) blobID);
+        }
+        return result;
+    }
+
+    private void writeStagingArea(HashMap<String, ObjectId> stagingArea) {
+        replaceFile(indexFile, serialize(stagingArea));
+    }
+
+    /**
+     * the name of fileName relative to workingDir with '/' separators,
+     * which is how commits and the staging area name files; a name which
+     * leads out of workingDir, as "../x" or an absolute path elsewhere may,
+     * is rejected
+     */
+    private String trackedName(String fileName) {
+        java.nio.file.Path root = workingDir.toPath().toAbsolutePath().normalize();
+        java.nio.file.Path path = root.resolve(fileName).normalize();
+        if (!path.startsWith(root)) {
+            throw error("File is outside the working directory.");
+        }
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * delete fileName from workingDir, along with the directories it leaves empty
+     */
+    private void deleteWorkingFile(String fileName) {
+        File file = join(workingDir, fileName);
+        if (file.isDirectory() || !file.delete()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        while (!dir.equals(workingDir) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /**
+     * get commit object according its commitID
+     * by go through commits directory(maybe shortened)
+     */
+    private Commit getCommitByID(String commitID) {
+        /* a full-length ID names the commit file directly */
+        if (commitID.length() == UID_LENGTH) {
+            File commitFile = join(commitsDir, commitID);
+            return commitFile.exists() ? readObject(commitFile, Commit.class) : null;
+        }
+        List<String> commitsIDList = plainFilenamesIn(commitsDir);
+        for (String commitsID : commitsIDList) {
+            if (commitsID.startsWith(commitID)) {
+                File commitFile = join(commitsDir, commitsID);
+                Commit commit = readObject(commitFile, Commit.class);
+                return commit;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * get the file of the given blob, first linking it from the source
+     * repository if this is a lazy clone which has not needed it yet
+     */
+    private File getBlobFile(ObjectId blobID) {
+        File blobFile = join(blobsDir, blobID.toHex());
+        if (!blobFile.exists() && lazySourceFile.exists()) {
+            File sourceBlob = Pack.findBlobFile(gitletDir, blobID.toHex());
+            if (sourceBlob.exists()) {
+                File temp = join(blobsDir, "." + blobID + ".tmp" + System.nanoTime());
+                linkOrCopy(sourceBlob, temp);
+                if (!temp.renameTo(blobFile)) {
+                    temp.delete();
+                }
+            }
+        }
+        return blobFile;
+    }
+
+    /**
+     * get the given branch head commit object
+     */
+    private Commit getBranchHeadCommit(String branchName) {
+        return getCommitByID(refs.read(branchName));
+    }
+
+    /**
+     * commit the staging area, returning the ID of the new commit
+     */
+    public synchronized String commit(String commitMessage) {
+        lockForWriting();
+        try {
+            if (commitMessage.trim().isEmpty()) {
+                throw error("Please enter a commit message.");
+            }
+            /* check if there is file in staging area to commit */
+            HashMap<String, ObjectId> stagingAreaMap = readStagingArea();
+            if (stagingAreaMap.isEmpty()) {
+                throw error("No changes added to the commit.");
+            }
+            String activeBranch = readContentsAsString(headFile);
+            String headCommitID = refs.read(activeBranch);
+            Commit headCommit = getCommitByID(headCommitID);
+            return writeCommit(headCommit, headCommitID, activeBranch, stagingAreaMap,
+                    commitMessage, null);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * build the commit of headCommit plus stagingAreaMap, save it, clean the
+     * staging area and move activeBranch to it. Returns its ID
+     */
+    private String writeCommit(Commit headCommit, String headCommitID,
+                               String activeBranch, Map<String, ObjectId> stagingAreaMap,
+                               String commitMessage, String secondParentCommitID) {
+        Commit newCommit = new Commit(headCommitID, commitMessage,
+                OffsetDateTime.now(), secondParentCommitID);
+
+        /* load the headCommit map and put the staging area: the stagingAreaMap */
+        newCommit.loadParentCommitMap(headCommit.getNameIDMap());
+        for (Map.Entry<String, ObjectId> entry : stagingAreaMap.entrySet()) {
+            String fileName = entry.getKey();
+            ObjectId blobID = entry.getValue();
+            /* if there are file need to delete,
+            remove it from nameIDMap to cancel tracking of it */
+            if (blobID.equals(DELETE_MARKER)) {
+                newCommit.getNameIDMap().remove(fileName);
+            } else {
+                newCommit.getNameIDMap().put(fileName, blobID);
+            }
+        }
+
+        /* build the newCommit File in Commits directory to save it */
+        String newCommitID = sha1(serialize(newCommit));
+        File newCommitFile = join(commitsDir, newCommitID);
+        atomicWriteObject(newCommitFile, newCommit);
+        maintenance.recordNewObjects(1);
+        commitGraph.add(ObjectId.fromHex(newCommitID), newCommit, stagingAreaMap.keySet());
+        timeIndex.add(ObjectId.fromHex(newCommitID), newCommit.getEpochMillis());
+
+        /* the commit and its new blobs are on disk before the branch moves */
+        writeBatch.add(newCommitFile);
+        for (ObjectId blobID : stagingAreaMap.values()) {
+            if (!blobID.equals(DELETE_MARKER)) {
+                writeBatch.add(join(blobsDir, blobID.toHex()));
+            }
+        }
+        writeBatch.sync();
+
+        /* make the HEAD pointer to point at the new commit, unless a process
+        which does not take the writer lock moved it meanwhile */
+        if (!refs.compareAndSet(activeBranch, headCommitID, newCommitID)) {
+            throw error("Branch %s was moved by another process.", activeBranch);
+        }
+
+        /* clean the stagingArea */
+        writeStagingArea(new HashMap<>());
+        return newCommitID;
+    }
+
+    public synchronized void remove(String fileName) {
+        lockForWriting();
+        try {
+            fileName = trackedName(fileName);
+            /* get the head commit and staging area map */
+            boolean stagingAreaChanged = false;
+            Commit headCommit = getBranchHeadCommit(readContentsAsString(headFile));
+            HashMap<String, ObjectId> stagingArea = readStagingArea();
+            if (stagingArea.containsKey(fileName)
+                    && !stagingArea.get(fileName).equals(DELETE_MARKER)) {
+                stagingArea.remove(fileName);
+                stagingAreaChanged = true;
+            }
+            if (headCommit.getNameIDMap().containsKey(fileName)) {
+                stagingArea.put(fileName, DELETE_MARKER);
+                stagingAreaChanged = true;
+                deleteWorkingFile(fileName);
+            }
+            if (!stagingAreaChanged) {
+                throw error("No reason to remove the file.");
+            }
+            writeStagingArea(stagingArea);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * the commits of the current branch, following first parents from its head
+     */
+    public List<LogEntry> log() {
+        List<LogEntry> entries = new ArrayList<>();
+        String commitID = refs.read(readContentsAsString(headFile));
+        while (commitID != null) {
+            Commit commit = readObject(join(commitsDir, commitID), Commit.class);
+            entries.add(new LogEntry(commitID, commit));
+            commitID = commit.getParentID();
+        }
+        return entries;
+    }
+
+    /**
+     * the commits of the current branch made from since to until, both in
+     * milliseconds since the epoch. With a complete time index, commits out
+     * of the range are passed by their commit-graph entry without reading them
+     */
+    public List<LogEntry> log(long since, long until) {
+        Set<ObjectId> inRange = null;
+        if (timeIndex.isComplete()) {
+            inRange = new HashSet<>(timeIndex.between(since, until));
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        String commitID = refs.read(readContentsAsString(headFile));
+        while (commitID != null) {
+            if (inRange != null && !inRange.contains(ObjectId.fromHex(commitID))) {
+                CommitGraph.Entry entry = commitGraph.get(ObjectId.fromHex(commitID));
+                if (entry != null) {
+                    commitID = entry.getParentID() == null ? null : entry.getParentID().toHex();
+                    continue;
+                }
+            }
+            Commit commit = readObject(join(commitsDir, commitID), Commit.class);
+            if (commit.getEpochMillis() >= since && commit.getEpochMillis() <= until) {
+                entries.add(new LogEntry(commitID, commit));
+            }
+            commitID = commit.getParentID();
+        }
+        return entries;
+    }
+
+    /**
+     * log of the commits of the current branch which changed fileName; the
+     * changed-path filters of the commit graph rule out most commits without
+     * reading them, the rest are checked against their first parent
+     */
+    public List<LogEntry> logFile(String fileName) {
+        fileName = trackedName(fileName);
+        List<LogEntry> entries = new ArrayList<>();
+        String commitID = refs.read(readContentsAsString(headFile));
+        while (commitID != null) {
+            CommitGraph.Entry entry = commitGraph.get(ObjectId.fromHex(commitID));
+            if (entry != null && !entry.mightHaveChanged(fileName)) {
+                commitID = entry.getParentID() == null ? null : entry.getParentID().toHex();
+                continue;
+            }
+            Commit commit = getCommitByID(commitID);
+            String parentCommitID = commit.getParentID();
+            ObjectId parentBlobID = parentCommitID == null
+                    ? null : getCommitByID(parentCommitID).getNameIDMap().get(fileName);
+            if (!Objects.equals(parentBlobID, commit.getNameIDMap().get(fileName))) {
+                entries.add(new LogEntry(commitID, commit));
+            }
+            commitID = parentCommitID;
+        }
+        return entries;
+    }
+
+    /**
+     * every commit ever made, in the order of the commits directory
+     */
+    public List<LogEntry> globalLog() {
+        return readCommits(commit -> true);
+    }
+
+    /**
+     * every commit made from since to until, both in milliseconds since the
+     * epoch, newest first. With a complete time index only those commits are read
+     */
+    public List<LogEntry> globalLog(long since, long until) {
+        List<String> commitIDs = new ArrayList<>();
+        List<LogEntry> entries;
+        if (timeIndex.isComplete()) {
+            for (ObjectId commitID : timeIndex.between(since, until)) {
+                commitIDs.add(commitID.toHex());
+            }
+            entries = ForkJoinPool.commonPool().invoke(
+                    new ReadCommitsTask(commitIDs, 0, commitIDs.size(), commit -> true));
+        } else {
+            commitIDs = listCommitIDs();
+            entries = ForkJoinPool.commonPool().invoke(
+                    new ReadCommitsTask(commitIDs, 0, commitIDs.size(), commit ->
+                            commit.getEpochMillis() >= since && commit.getEpochMillis() <= until));
+            entries.sort(Comparator.comparingLong(
+                    (LogEntry entry) -> entry.getCommit().getEpochMillis()).reversed());
+        }
+        return entries;
+    }
+
+    /**
+     * the IDs of the commits whose message is commitMessageToFind
+     */
+    public List<String> find(String commitMessageToFind) {
+        List<String> found = new ArrayList<>();
+        for (LogEntry entry
+                : readCommits(commit -> commit.getCommitMessage().equals(commitMessageToFind))) {
+            found.add(entry.getCommitID());
+        }
+        return found;
+    }
+
+    /**
+     * the commits accepted by filter, in the order of the commits directory;
+     * they are read in parallel on the common fork/join pool
+     */
+    private List<LogEntry> readCommits(Predicate<Commit> filter) {
+        List<String> commitIDs = listCommitIDs();
+        return ForkJoinPool.commonPool().invoke(
+                new ReadCommitsTask(commitIDs, 0, commitIDs.size(), filter));
+    }
+
+    /* the IDs of all commits, in the order of the commits directory */
+    private List<String> listCommitIDs() {
+        List<String> commitIDList = plainFilenamesIn(commitsDir);
+        if (commitIDList == null) {
+            return new ArrayList<>();
+        }
+        List<String> commitIDs = new ArrayList<>(commitIDList);
+        /* temporary files of commits being written */
+        commitIDs.removeIf(commitID -> commitID.startsWith("."));
+        return commitIDs;
+    }
+
+    /** Reads a range of commits, splitting it in halves while it is large. */
+    private class ReadCommitsTask extends RecursiveTask<List<LogEntry>> {
+        private static final long serialVersionUID = 1L;
+        /* ranges of at most this many commits are read by a single task */
+        private static final int LEAF_SIZE = 64;
+
+        private final List<String> commitIDs;
+        private final int from;
+        private final int to;
+        private final Predicate<Commit> filter;
+
+        ReadCommitsTask(List<String> commitIDs, int from, int to, Predicate<Commit> filter) {
+            this.commitIDs = commitIDs;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+        }
+
+        @Override
+        protected List<LogEntry> compute() {
+            if (to - from <= LEAF_SIZE) {
+                List<LogEntry> entries = new ArrayList<>();
+                for (String commitID : commitIDs.subList(from, to)) {
+                    Commit commit = readObject(Utils.join(commitsDir, commitID), Commit.class);
+                    if (filter.test(commit)) {
+                        entries.add(new LogEntry(commitID, commit));
+                    }
+                }
+                return entries;
+            }
+            int middle = (from + to) >>> 1;
+            ReadCommitsTask left = new ReadCommitsTask(commitIDs, from, middle, filter);
+            left.fork();
+            List<LogEntry> entries = new ReadCommitsTask(commitIDs, middle, to, filter).compute();
+            /* the left half comes first, whichever finished first */
+            List<LogEntry> leftEntries = left.join();
+            leftEntries.addAll(entries);
+            return leftEntries;
+        }
+    }
+
+    public Status status() {
+        String activeBranch = readContentsAsString(headFile);
+        Status status = new Status(activeBranch, new ArrayList<>(refs.list().keySet()),
+                new ArrayList<>(getWatchedUntrackedFile()));
+        HashMap<String, ObjectId> stagingArea = readStagingArea();
+        for (Map.Entry<String, ObjectId> entry : stagingArea.entrySet()) {
+            if (entry.getValue().equals(DELETE_MARKER)) {
+                status.removedFiles.add(entry.getKey());
+            } else {
+                status.stagedFiles.add(entry.getKey());
+            }
+        }
+        return status;
+    }
+
+    /**
+     * check out fileName as it is in the head commit
+     */
+    public synchronized void checkOutHeadCommit(String fileName) {
+        lockForWriting();
+        try {
+            fileName = trackedName(fileName);
+            Commit headCommit = getBranchHeadCommit(readContentsAsString(headFile));
+            if (!headCommit.getNameIDMap().containsKey(fileName)) {
+                throw error("File does not exist in that commit.");
+            }
+            checkSparseCheckoutIncludes(fileName);
+            ObjectId blobID = headCommit.getNameIDMap().get(fileName);
+            checkOutFile(fileName, blobID);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * check out fileName as it is in the commit commitID (maybe shortened)
+     */
+    public synchronized void checkOutSpecialCommit(String commitID, String fileName) {
+        lockForWriting();
+        try {
+            /* handle the shortened ID search by method getCommitByID */
+            Commit specialCommit = getCommitByID(commitID);
+            if (specialCommit == null) {
+                throw error("No commit with that id exists.");
+            }
+            fileName = trackedName(fileName);
+            if (!specialCommit.getNameIDMap().containsKey(fileName)) {
+                throw error("File does not exist in that commit.");
+            }
+            checkSparseCheckoutIncludes(fileName);
+            ObjectId blobID = specialCommit.getNameIDMap().get(fileName);
+            checkOutFile(fileName, blobID);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public synchronized void checkOutBranch(String givenBranchName) {
+        lockForWriting();
+        try {
+            if (!refs.exists(givenBranchName)) {
+                throw error("No such branch exists.");
+            } else if (givenBranchName.equals(readContentsAsString(headFile))) {
+                throw error("No need to checkout the current branch.");
+            }
+            Commit givenHeadCommit = getBranchHeadCommit(givenBranchName);
+            SparseCheckout sparseCheckout = new SparseCheckout(gitletDir);
+            TreeMap<String, ObjectId> givenFiles =
+                    sparseCheckout.filter(givenHeadCommit.getNameIDMap());
+            Set<String> untrackedFile = getUntrackedFile();
+            if (!untrackedFile.isEmpty() && overwritten(untrackedFile, givenFiles)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            checkOutFiles(givenFiles);
+            /* delete the file be tracked in headCommit but not tracked in given headCommit */
+            for (String fileName
+                    : getBranchHeadCommit(readContentsAsString(headFile)).getNameIDMap().keySet()) {
+                if (!givenHeadCommit.getNameIDMap().containsKey(fileName)
+                        && sparseCheckout.includes(fileName)) {
+                    deleteWorkingFile(fileName);
+                }
+            }
+            /* view the given branch as working branch */
+            replaceFile(headFile, givenBranchName);
+
+            /* clean up the staging area */
+            writeStagingArea(new HashMap<>());
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * check out all the given files (file name -> blobID) into workingDir
+     */
+    private void checkOutFiles(Map<String, ObjectId> files) {
+        for (Map.Entry<String, ObjectId> entry : files.entrySet()) {
+            String fileName = entry.getKey();
+            ObjectId blobID = entry.getValue();
+            checkOutFile(fileName, blobID);
+        }
+    }
+
+    /* check if the untrackedFile will be overWritten*/
+    private static boolean overwritten(Set<String> fileSet, TreeMap<String, ObjectId> map) {
+        for (String fileName : fileSet) {
+            if (map.containsKey(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkOutFile(String fileName, ObjectId blobID) {
+        File fileToCheckOut = join(workingDir, fileName);
+        fileToCheckOut.getParentFile().mkdirs();
+        File blobFile = getBlobFile(blobID);
+        /* stream the stored content straight into workingDir, deserializing only as a fallback */
+        if (!Blob.transferContent(blobFile, fileToCheckOut)) {
+            Blob checkOutBlob = readObject(blobFile, Blob.class);
+            writeContents(fileToCheckOut, checkOutBlob.getContent());
+        }
+    }
+
+    /*
+     * get the untracked file list in workingDir for status, from the watcher
+     * if one is running. Its events may lag behind the file system, so the
+     * checks which keep checkout, reset and merge from overwriting untracked
+     * files use getUntrackedFile instead
+     */
+    private Set<String> getWatchedUntrackedFile() {
+        WorkingTreeWatcher watcher = workingTreeWatcher;
+        if (watcher != null) {
+            /* the index is hashed, since a rewrite may keep its size and mtime */
+            String trackingKey = refs.read(readContentsAsString(headFile))
+                    + ":" + sha1((Object) readContents(indexFile));
+            try {
+                return watcher.untrackedFiles(trackingKey, this::getTrackedFile);
+            } catch (GitletException excp) {
+                /* stopped by another thread meanwhile: scan instead */
+                if (workingTreeWatcher == watcher) {
+                    throw excp;
+                }
+            }
+        }
+        return getUntrackedFile();
+    }
+
+    /* get the untracked file list in workingDir by scanning it */
+    private HashSet<String> getUntrackedFile() {
+        List<String> filesInWorkingDir = new WorkingTreeScanner(workingDir).scan();
+        HashSet<String> untrackedFileSet = new HashSet<>();
+        Set<String> trackedFiles = getTrackedFile();
+        for (String fileName : filesInWorkingDir) {
+            if (!trackedFiles.contains(fileName)) {
+                untrackedFileSet.add(fileName);
+            }
+        }
+        return untrackedFileSet;
+    }
+
+    /* get the files tracked by the head commit or the staging area */
+    private Set<String> getTrackedFile() {
+        Set<String> trackedFiles = new HashSet<>(readStagingArea().keySet());
+        trackedFiles.addAll(getBranchHeadCommit(readContentsAsString(headFile)).
+                getNameIDMap().keySet());
+        return trackedFiles;
+    }
+
+    /**
+     * keep the untracked files of workingDir up to date from file system
+     * events, so that a long-running process does not rescan it on every
+     * status. This is for embedding applications only: a command line process
+     * ends before the watcher would pay off. Checkout, reset and merge always
+     * scan, since events may arrive after the command starts
+     */
+    public synchronized void watchWorkingTree() throws IOException {
+        if (workingTreeWatcher == null) {
+            workingTreeWatcher = new WorkingTreeWatcher(workingDir);
+        }
+    }
+
+    public synchronized void stopWatchingWorkingTree() throws IOException {
+        if (workingTreeWatcher != null) {
+            workingTreeWatcher.close();
+            workingTreeWatcher = null;
+        }
+    }
+
+    /**
+     * release the resources held by this instance; the repository stays as it is
+     */
+    @Override
+    public void close() throws IOException {
+        stopWatchingWorkingTree();
+    }
+
+    /**
+     * the patterns of the sparse checkout, empty if every file is checked out
+     */
+    public synchronized List<String> getSparseCheckout() {
+        File sparseCheckoutFile = join(gitletDir, SparseCheckout.FILE_NAME);
+        List<String> patterns = new ArrayList<>();
+        if (sparseCheckoutFile.isFile()) {
+            for (String line : readContentsAsString(sparseCheckoutFile).split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    patterns.add(line.trim());
+                }
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * check out only the tracked files matching patterns (see SparseCheckout),
+     * or every file if patterns is empty. Files of the head commit which are
+     * newly included are written into workingDir, and those newly excluded
+     * are deleted from it unless they have been modified
+     */
+    public synchronized void setSparseCheckout(List<String> patterns) {
+        lockForWriting();
+        try {
+            if (!readStagingArea().isEmpty()) {
+                throw error("You have uncommitted changes.");
+            }
+            for (String pattern : patterns) {
+                try {
+                    new WorkingTreeScanner.IgnoreRule(pattern);
+                } catch (IllegalArgumentException excp) {
+                    throw error("Invalid pattern %s.", pattern);
+                }
+            }
+            SparseCheckout oldSparseCheckout = new SparseCheckout(gitletDir);
+            File sparseCheckoutFile = join(gitletDir, SparseCheckout.FILE_NAME);
+            if (patterns.isEmpty()) {
+                sparseCheckoutFile.delete();
+            } else {
+                replaceFile(sparseCheckoutFile, String.join("\n", patterns) + "\n");
+            }
+            SparseCheckout sparseCheckout = new SparseCheckout(gitletDir);
+            Commit headCommit = getBranchHeadCommit(readContentsAsString(headFile));
+            for (Map.Entry<String, ObjectId> entry : headCommit.getNameIDMap().entrySet()) {
+                String fileName = entry.getKey();
+                boolean wasIncluded = oldSparseCheckout.includes(fileName);
+                boolean included = sparseCheckout.includes(fileName);
+                File file = join(workingDir, fileName);
+                if (included && !wasIncluded && !file.exists()) {
+                    checkOutFile(fileName, entry.getValue());
+                } else if (wasIncluded && !included && file.isFile()
+                        && ObjectId.sha1(readContents(file)).equals(entry.getValue())) {
+                    deleteWorkingFile(fileName);
+                }
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /* refuse to write a single file outside the sparse checkout */
+    private void checkSparseCheckoutIncludes(String fileName) {
+        if (!new SparseCheckout(gitletDir).includes(fileName)) {
+            throw error("File is outside the sparse checkout.");
+        }
+    }
+
+    public synchronized void branch(String branchName) {
+        lockForWriting();
+        try {
+            if (refs.exists(branchName)) {
+                throw error("A branch with that name already exists.");
+            }
+            refs.write(branchName, refs.read(readContentsAsString(headFile)));
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public synchronized void rmBranch(String rmBranchName) {
+        lockForWriting();
+        try {
+            if (!refs.exists(rmBranchName)) {
+                throw error("A branch with that name does not exist.");
+            }
+            if (rmBranchName.equals(readContentsAsString(headFile))) {
+                throw error("Cannot remove the current branch.");
+            }
+            refs.delete(rmBranchName);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * move all loose branch files into the packed-refs file
+     */
+    public synchronized void packRefs() {
+        lockForWriting();
+        try {
+            refs.pack();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * make workingDir a copy of the repository in sourceDir (a .gitlet
+     * directory or the directory holding it, relative to workingDir). Object
+     * files never change once written, so they are hard linked instead of
+     * copied; a lazy clone does not even link the blobs until checkOutFile
+     * needs them. The head commit is checked out at once, so every blob of
+     * its tree is linked by the clone itself: only the blobs of other
+     * commits (history and other branches) are deferred
+     */
+    public synchronized void cloneRepository(String sourceDir, boolean lazy) {
+        if (gitletDir.exists()) {
+            throw error("A Gitlet version-control system"
+                    + " already exists in the current directory.");
+        }
+        File source = workingDir.toPath().resolve(sourceDir).normalize().toFile();
+        if (!source.getName().equals(".gitlet")) {
+            source = join(source, ".gitlet");
+        }
+        if (!source.isDirectory()) {
+            throw error("Remote directory not found.");
+        }
+        Refs sourceRefs = new Refs(source);
+        String sourceHead = readContentsAsString(join(source, "HEAD"));
+        Commit headCommit = readObject(Pack.commitFile(source, sourceRefs.read(sourceHead)),
+                Commit.class);
+        for (String fileName : new WorkingTreeScanner(workingDir).scan()) {
+            if (headCommit.getNameIDMap().containsKey(fileName)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+        }
+        setupPersistence();
+        linkObjects(join(source, "objects", "commits"), commitsDir);
+        if (lazy) {
+            writeContents(lazySourceFile, source.getPath());
+        } else {
+            /* a lazy source lacks blobs its own source still holds */
+            File blobSource = source;
+            while (blobSource != null) {
+                linkObjects(join(blobSource, "objects", "blobs"), blobsDir);
+                File sourceLazySource = join(blobSource, "lazy-source");
+                blobSource = sourceLazySource.isFile()
+                        ? new File(readContentsAsString(sourceLazySource)) : null;
+            }
+        }
+        refs.writeAll(sourceRefs.list());
+        /* side files are copied, not linked, since they are appended to */
+        for (String sideFile : List.of("commit-graph", "time-index")) {
+            File sourceFile = join(source, sideFile);
+            if (sourceFile.exists()) {
+                writeContents(join(gitletDir, sideFile), readContents(sourceFile));
+            }
+        }
+        atomicWriteContents(headFile, sourceHead);
+        remotesDir.mkdir();
+        writeContents(join(remotesDir, "origin"), source.getPath());
+        checkOutFiles(headCommit.getNameIDMap());
+        maintenance.recordFresh();
+    }
+
+    private static void linkObjects(File sourceDir, File targetDir) {
+        List<String> objectIDs = plainFilenamesIn(sourceDir);
+        if (objectIDs != null) {
+            objectIDs.parallelStream()
+                    .filter(objectID -> !objectID.startsWith(".")
+                            && !join(targetDir, objectID).exists())
+                    .forEach(objectID -> linkOrCopy(join(sourceDir, objectID),
+                            join(targetDir, objectID)));
+        }
+    }
+
+    /**
+     * verify the object store: what is corrupt, missing or dangling
+     */
+    public Fsck.Report fsck() {
+        return new Fsck(gitletDir).check();
+    }
+
+    /**
+     * write the files of a commit, named by its (maybe shortened) ID or by a
+     * branch, to out as an archive, streaming each file from its blob. With
+     * parallel a gzipped tar is compressed in chunks on all cores. Neither
+     * the working directory nor the staging area is read or changed, and the
+     * blobs a lazy clone lacks are read from its source, not linked. It
+     * holds the writer lock while it reads, as createBundle does, so a
+     * concurrent maintenance run cannot prune a blob it is about to copy
+     */
+    public synchronized void archive(String commitOrBranch, OutputStream out,
+                                     ArchiveFormat format, boolean parallel) {
+        lockForWriting();
+        try {
+            writeArchive(commitOrBranch, out, format, parallel);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void writeArchive(String commitOrBranch, OutputStream out,
+                              ArchiveFormat format, boolean parallel) {
+        Commit commit = refs.exists(commitOrBranch)
+                ? getBranchHeadCommit(commitOrBranch) : getCommitByID(commitOrBranch);
+        if (commit == null) {
+            throw error("No commit with that id exists.");
+        }
+        long mtime = commit.getEpochMillis() / 1000;
+        try {
+            Archive.write(commit.getNameIDMap(),
+                    blobID -> Pack.findBlobFile(gitletDir, blobID.toHex()),
+                    format, parallel, mtime, out);
+        } catch (IOException excp) {
+            throw error("Cannot write archive: %s", excp.getMessage());
+        }
+    }
+
+    /**
+     * write the commits and blobs reachable from a branch but not from a base
+     * commit to bundleFile, as one checksummed pack. range is "base..branch",
+     * where base is a (maybe shortened) commit ID or a branch, or a branch
+     * alone for its whole history. It changes nothing in the repository,
+     * and the blobs a lazy clone lacks are read from its source, not
+     * linked, but it holds the writer lock while it reads, so a concurrent
+     * maintenance run cannot prune a blob it is about to copy
+     */
+    public synchronized void createBundle(String range, File bundleFile) {
+        lockForWriting();
+        try {
+            writeBundle(range, bundleFile);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void writeBundle(String range, File bundleFile) {
+        String baseName = "";
+        String branchName = range;
+        int dots = range.indexOf("..");
+        if (dots >= 0) {
+            baseName = range.substring(0, dots);
+            branchName = range.substring(dots + 2);
+        }
+        String headID = refs.read(branchName);
+        if (headID == null) {
+            throw error("No such branch exists.");
+        }
+        String baseID = "";
+        ObjectIdSet baseCommits = new ObjectIdSet();
+        if (!baseName.isEmpty()) {
+            baseID = refs.exists(baseName) ? refs.read(baseName) : resolveCommitID(baseName);
+            if (baseID == null) {
+                throw error("No commit with that id exists.");
+            }
+            baseCommits = getAllParent(baseID);
+        }
+        ObjectIdSet base = baseCommits;
+        Pack.Contents objects = Pack.since(gitletDir, headID,
+                commitID -> base.contains(ObjectId.fromHex(commitID)));
+        new Bundle(baseID, branchName, headID).write(gitletDir, objects, bundleFile);
+    }
+
+    /**
+     * verify the bundle in bundleFile and store its objects in one streaming
+     * pass, then point its branch at its head; the branch may only move
+     * forward, and if it is the current one, its head is checked out as by
+     * reset. Returns the name of the branch
+     */
+    public synchronized String importBundle(File bundleFile) {
+        lockForWriting();
+        try {
+            Bundle bundle = Bundle.read(bundleFile, gitletDir,
+                    commitID -> join(commitsDir, commitID).exists());
+            addObjects(gitletDir, bundle.getStoredObjects(), writeBatch, commitGraph);
+            writeBatch.sync();
+            String headID = bundle.getHeadID();
+            if (!join(commitsDir, headID).exists()) {
+                throw error("Bundle does not hold commit %s.", headID);
+            }
+            String branchName = bundle.getBranchName();
+            String currentID = refs.read(branchName);
+            if (currentID != null
+                    && !getAllParent(headID).contains(ObjectId.fromHex(currentID))) {
+                throw error("Branch %s has commits the bundle lacks.", branchName);
+            }
+            if (!branchName.equals(readContentsAsString(headFile))) {
+                refs.write(branchName, headID);
+            } else if (!headID.equals(currentID)) {
+                reset(headID);
+            }
+            return branchName;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /* the full ID of the commit commitID (maybe shortened), or null if there is none */
+    private String resolveCommitID(String commitID) {
+        if (commitID.length() == UID_LENGTH) {
+            return join(commitsDir, commitID).exists() ? commitID : null;
+        }
+        for (String fullID : listCommitIDs()) {
+            if (fullID.startsWith(commitID)) {
+                return fullID;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * start background maintenance if one of its thresholds has been crossed
+     */
+    public synchronized void scheduleMaintenance() {
+        if (gitletDir.exists() && maintenance.isNeeded()) {
+            maintenance.schedule(workingDir);
+        }
+    }
+
+    /**
+     * pack refs, refresh the commit graph and prune unreferenced blobs now,
+     * returning false if another run holds the lock
+     */
+    public synchronized boolean maintenance() {
+        return maintenance.run();
+    }
+
+    public synchronized void addRemote(String remoteName, String remoteDir) {
+        lockForWriting();
+        try {
+            File remoteFile = join(remotesDir, remoteName);
+            if (remoteFile.exists()) {
+                throw error("A remote with that name already exists.");
+            }
+            remotesDir.mkdir();
+            writeContents(remoteFile, remoteDir.replace("/", File.separator));
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public synchronized void rmRemote(String remoteName) {
+        lockForWriting();
+        try {
+            File remoteFile = join(remotesDir, remoteName);
+            if (!remoteFile.exists()) {
+                throw error("A remote with that name does not exist.");
+            }
+            remoteFile.delete();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * get the .gitlet directory of the given remote, or null if it is not there
+     */
+    private File getRemoteDir(String remoteName) {
+        File remoteFile = join(remotesDir, remoteName);
+        if (!remoteFile.exists()) {
+            return null;
+        }
+        File remoteDir = workingDir.toPath().resolve(readContentsAsString(remoteFile)).toFile();
+        return remoteDir.isDirectory() ? remoteDir : null;
+    }
+
+    /**
+     * append the commits of the current branch the remote branch lacks to it,
+     * sending only the commits and blobs the remote does not have
+     */
+    public synchronized void push(String remoteName, String remoteBranchName) {
+        File remoteDir = getRemoteDir(remoteName);
+        if (remoteDir == null) {
+            throw error("Remote directory not found.");
+        }
+        String headCommitID = refs.read(readContentsAsString(headFile));
+        /* the remote is the repository this changes */
+        WriterLock remoteLock = WriterLock.of(remoteDir);
+        remoteLock.lock();
+        try {
+            Refs remoteRefs = new Refs(remoteDir);
+            String remoteHeadID = remoteRefs.read(remoteBranchName);
+            if (remoteHeadID != null
+                    && !getAllParent(headCommitID).contains(ObjectId.fromHex(remoteHeadID))) {
+                throw error("Please pull down remote changes before pushing.");
+            }
+            Pack.Contents missing = Pack.negotiate(gitletDir, headCommitID, remoteDir);
+            Pack.transfer(gitletDir, missing, remoteDir);
+            /* durability is the remote's setting, as for its own writers */
+            boolean durable = new Config(remoteDir).get(Config.DURABILITY, "none")
+                    .equals("batch");
+            WriteBatch remoteBatch = new WriteBatch(durable);
+            addObjects(remoteDir, missing, remoteBatch, new CommitGraph(remoteDir));
+            remoteBatch.sync();
+            remoteRefs.setSync(durable);
+            if (!remoteRefs.compareAndSet(remoteBranchName, remoteHeadID, headCommitID)) {
+                throw error("Please pull down remote changes before pushing.");
+            }
+        } finally {
+            remoteLock.unlock();
+        }
+    }
+
+    /**
+     * copy the commits and blobs of the remote branch this repository lacks,
+     * and point the branch [remote name]/[remote branch name] at its head
+     */
+    public synchronized void fetch(String remoteName, String remoteBranchName) {
+        lockForWriting();
+        try {
+            File remoteDir = getRemoteDir(remoteName);
+            if (remoteDir == null) {
+                throw error("Remote directory not found.");
+            }
+            String remoteHeadID = new Refs(remoteDir).read(remoteBranchName);
+            if (remoteHeadID == null) {
+                throw error("That remote does not have that branch.");
+            }
+            Pack.Contents missing = Pack.negotiate(remoteDir, remoteHeadID, gitletDir);
+            Pack.transfer(remoteDir, missing, gitletDir);
+            addObjects(gitletDir, missing, writeBatch, commitGraph);
+            writeBatch.sync();
+            refs.write(remoteName + "/" + remoteBranchName, remoteHeadID);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * record the object files of contents, just added to the gitlet directory
+     * dir, in batch, and the new commits in its commit graph and time index
+     */
+    private static void addObjects(File dir, Pack.Contents contents, WriteBatch batch,
+                                   CommitGraph dirCommitGraph) {
+        TimeIndex dirTimeIndex = new TimeIndex(dir);
+        /* the new commits come parents first, so a parent is usually the last one */
+        String lastID = null;
+        Commit last = null;
+        for (String commitID : contents.commitIDs) {
+            File commitFile = Pack.commitFile(dir, commitID);
+            batch.add(commitFile);
+            Commit commit = readObject(commitFile, Commit.class);
+            String parentID = commit.getParentID();
+            Map<String, ObjectId> parentMap = new TreeMap<>();
+            if (parentID != null) {
+                parentMap = (parentID.equals(lastID) ? last
+                        : readObject(Pack.commitFile(dir, parentID), Commit.class))
+                        .getNameIDMap();
+            }
+            ObjectId id = ObjectId.fromHex(commitID);
+            dirCommitGraph.add(id, commit, CommitGraph.changedPaths(parentMap, commit));
+            dirTimeIndex.add(id, commit.getEpochMillis());
+            lastID = commitID;
+            last = commit;
+        }
+        for (String blobID : contents.blobIDs) {
+            batch.add(Pack.blobFile(dir, blobID));
+        }
+        new Maintenance(dir).recordNewObjects(contents.size());
+    }
+
+    public synchronized MergeResult pull(String remoteName, String remoteBranchName) {
+        lockForWriting();
+        try {
+            File remoteDir = getRemoteDir(remoteName);
+            if (remoteDir == null) {
+                throw error("Remote directory not found.");
+            }
+            if (!new Refs(remoteDir).exists(remoteBranchName)) {
+                throw error("That remote does not have that branch.");
+            }
+            fetch(remoteName, remoteBranchName);
+            return merge(remoteName + "/" + remoteBranchName);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public synchronized void reset(String resetCommitID) {
+        lockForWriting();
+        try {
+            File resetCommitFile = join(commitsDir, resetCommitID);
+            if (!resetCommitFile.exists()) {
+                throw error("No commit with that id exists.");
+            }
+            Commit resetCommit = readObject(resetCommitFile, Commit.class);
+            SparseCheckout sparseCheckout = new SparseCheckout(gitletDir);
+            TreeMap<String, ObjectId> resetFiles =
+                    sparseCheckout.filter(resetCommit.getNameIDMap());
+            Set<String> untrackedFile = getUntrackedFile();
+            if (!untrackedFile.isEmpty() && overwritten(untrackedFile, resetFiles)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            checkOutFiles(resetFiles);
+            Commit headCommit = getBranchHeadCommit(readContentsAsString(headFile));
+            for (String fileName : headCommit.getNameIDMap().keySet()) {
+                if (!resetCommit.getNameIDMap().containsKey(fileName)
+                        && sparseCheckout.includes(fileName)) {
+                    deleteWorkingFile(fileName);
+                }
+            }
+            refs.write(readContentsAsString(headFile), resetCommitID);
+            writeStagingArea(new HashMap<>());
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public synchronized MergeResult merge(String givenBranchName) {
+        lockForWriting();
+        try {
+            HashMap<String, ObjectId> stagingArea = readStagingArea();
+            if (!stagingArea.isEmpty()) {
+                throw error("You have uncommitted changes.");
+            }
+            String givenBranchHeadCommitID = refs.read(givenBranchName);
+            if (givenBranchHeadCommitID == null) {
+                throw error("A branch with that name does not exist.");
+            }
+            String activeBranch = readContentsAsString(headFile);
+            if (givenBranchName.equals(activeBranch)) {
+                throw error("Cannot merge a branch with itself.");
+            }
+            String headCommitID = refs.read(activeBranch);
+            Commit givenBranchHeadCommit = getCommitByID(givenBranchHeadCommitID);
+            Commit headCommit = getCommitByID(headCommitID);
+            SparseCheckout sparseCheckout = new SparseCheckout(gitletDir);
+            Set<String> untrackedFile = getUntrackedFile();
+            if (!untrackedFile.isEmpty() && overwritten(untrackedFile,
+                    sparseCheckout.filter(givenBranchHeadCommit.getNameIDMap()))) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+            String splitPointID = getSplitPointID(givenBranchHeadCommitID, headCommitID);
+            if (splitPointID.equals(givenBranchHeadCommitID)) {
+                return MergeResult.ALREADY_MERGED;
+            }
+            if (splitPointID.equals(headCommitID)) {
+                checkOutBranch(givenBranchName);
+                return MergeResult.FAST_FORWARDED;
+            }
+            Commit splitPoint = getCommitByID(splitPointID);
+            MergePlan plan = planMergeWithRenames(splitPoint.getNameIDMap(),
+                    headCommit.getNameIDMap(), givenBranchHeadCommit.getNameIDMap(),
+                    sparseCheckout);
+            applyMerge(plan, sparseCheckout);
+            String mergeMessage = String.format("Merged %s into %s.",
+                    givenBranchName, activeBranch);
+            writeCommit(headCommit, headCommitID, activeBranch, plan.staged,
+                    mergeMessage, givenBranchHeadCommitID);
+            return plan.conflicts.isEmpty() ? MergeResult.MERGED : MergeResult.CONFLICTED;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * the result of a three-way merge, computed in memory before anything
+     * in workingDir or the gitlet directory is touched
+     */
+    private static class MergePlan {
+        /* file name -> blobID to write into workingDir */
+        private final TreeMap<String, ObjectId> checkouts = new TreeMap<>();
+        /* files to remove from workingDir */
+        private final TreeSet<String> deletions = new TreeSet<>();
+        /* conflicted file name -> content of the conflict file */
+        private final TreeMap<String, byte[]> conflicts = new TreeMap<>();
+        /* the staging area of the merge commit, filled in by applyMerge */
+        private final HashMap<String, ObjectId> staged = new HashMap<>();
+    }
+
+    /**
+     * planMerge after renaming files in the split point and in the other
+     * side's tree as either side renamed them since the split point, so a
+     * file renamed on one side and edited on the other merges like an edit.
+     * A file whose head version is moved to its name in the given branch is
+     * deleted from its old name, and written under the new one if the merge
+     * keeps the head version. Only files sparseCheckout includes are
+     * candidates, so that no blob outside its patterns is read
+     */
+    private MergePlan planMergeWithRenames(TreeMap<String, ObjectId> splitPointMap,
+                                           TreeMap<String, ObjectId> headCommitMap,
+                                           TreeMap<String, ObjectId> givenHeadCommitMap,
+                                           SparseCheckout sparseCheckout) {
+        int threshold = Integer.parseInt(config.get(Config.RENAME_THRESHOLD, "50"));
+        Map<String, ObjectId> splitCandidates = splitPointMap;
+        Map<String, ObjectId> headCandidates = headCommitMap;
+        Map<String, ObjectId> givenCandidates = givenHeadCommitMap;
+        if (sparseCheckout.isEnabled()) {
+            splitCandidates = sparseCheckout.filter(splitPointMap);
+            headCandidates = sparseCheckout.filter(headCommitMap);
+            givenCandidates = sparseCheckout.filter(givenHeadCommitMap);
+        }
+        TreeMap<String, String> headRenames = RenameDetector.detect(splitCandidates,
+                headCandidates, this::readBlobContent, threshold);
+        TreeMap<String, String> givenRenames = RenameDetector.detect(splitCandidates,
+                givenCandidates, this::readBlobContent, threshold);
+        TreeMap<String, ObjectId> splitView = new TreeMap<>(splitPointMap);
+        TreeMap<String, ObjectId> headView = new TreeMap<>(headCommitMap);
+        TreeMap<String, ObjectId> givenView = new TreeMap<>(givenHeadCommitMap);
+        /* old name -> new name of head files moved in headView */
+        TreeMap<String, String> movedHeadFiles = new TreeMap<>();
+        for (Map.Entry<String, String> rename : headRenames.entrySet()) {
+            String oldName = rename.getKey();
+            String newName = rename.getValue();
+            String givenNewName = givenRenames.remove(oldName);
+            if (givenNewName != null && !givenNewName.equals(newName)) {
+                /* renamed differently on both sides: merge by name */
+                continue;
+            }
+            if (givenNewName == null && givenView.containsKey(newName)) {
+                continue;
+            }
+            renameIn(splitView, oldName, newName);
+            renameIn(givenView, oldName, newName);
+        }
+        for (Map.Entry<String, String> rename : givenRenames.entrySet()) {
+            String oldName = rename.getKey();
+            String newName = rename.getValue();
+            if (headRenames.containsKey(oldName) || headView.containsKey(newName)) {
+                continue;
+            }
+            renameIn(splitView, oldName, newName);
+            if (renameIn(headView, oldName, newName)) {
+                movedHeadFiles.put(oldName, newName);
+            }
+        }
+        MergePlan plan = planMerge(splitView, headView, givenView);
+        for (Map.Entry<String, String> move : movedHeadFiles.entrySet()) {
+            String oldName = move.getKey();
+            String newName = move.getValue();
+            plan.deletions.add(oldName);
+            plan.staged.put(oldName, DELETE_MARKER);
+            if (!plan.checkouts.containsKey(newName) && !plan.conflicts.containsKey(newName)
+                    && !plan.deletions.contains(newName)) {
+                plan.checkouts.put(newName, headView.get(newName));
+                plan.staged.put(newName, headView.get(newName));
+            }
+        }
+        return plan;
+    }
+
+    /* move the entry of oldName in tree to newName, returning whether there was one */
+    private static boolean renameIn(TreeMap<String, ObjectId> tree, String oldName,
+                                    String newName) {
+        ObjectId blobID = tree.remove(oldName);
+        if (blobID == null) {
+            return false;
+        }
+        tree.put(newName, blobID);
+        return true;
+    }
+
+    private byte[] readBlobContent(ObjectId blobID) {
+        return readObject(getBlobFile(blobID), Blob.class).getContent();
+    }
+
+    /**
+     * classify every file of the three trees; only reads blobs of conflicted files
+     */
+    private MergePlan planMerge(TreeMap<String, ObjectId> splitPointMap,
+                                TreeMap<String, ObjectId> headCommitMap,
+                                TreeMap<String, ObjectId> givenHeadCommitMap) {
+        MergePlan plan = new MergePlan();
+        Set<String> allFiles = new HashSet<>(splitPointMap.keySet());
+        allFiles.addAll(headCommitMap.keySet());
+        allFiles.addAll(givenHeadCommitMap.keySet());
+        for (String fileName : allFiles) {
+            ObjectId sID = splitPointMap.get(fileName);
+            ObjectId hID = headCommitMap.get(fileName);
+            ObjectId gID = givenHeadCommitMap.get(fileName);
+            boolean sIDExist = (sID != null);
+            boolean hIDExist = (hID != null);
+            boolean gIDExist = (gID != null);
+            if ((sIDExist && hIDExist && gIDExist && sID.equals(hID) && !sID.equals(gID))
+                    || !sIDExist && gIDExist && !hIDExist) {
+                plan.checkouts.put(fileName, gID);
+                plan.staged.put(fileName, gID);
+            } else if (sIDExist && hIDExist && !gIDExist && Objects.equals(sID, hID)) {
+                plan.deletions.add(fileName);
+                plan.staged.put(fileName, DELETE_MARKER);
+            } else if (sIDExist && hIDExist && gIDExist
+                    && !sID.equals(hID) && sID.equals(gID)) {
+                continue;
+            } else if ((!sIDExist && !gIDExist && hIDExist) || Objects.equals(hID, gID)
+                    || (sIDExist && !hIDExist && Objects.equals(sID, gID))) {
+                continue;
+            } else {
+                plan.conflicts.put(fileName, conflictContent(hID, gID));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * write the whole plan into workingDir and the blobs directory in one
+     * pass. Checkouts and deletions outside the sparse checkout only go into
+     * the merge commit, while conflicts are written wherever they are, since
+     * they have to be resolved
+     */
+    private void applyMerge(MergePlan plan, SparseCheckout sparseCheckout) {
+        for (Map.Entry<String, byte[]> entry : plan.conflicts.entrySet()) {
+            byte[] content = entry.getValue();
+            ObjectId blobID = ObjectId.sha1(content);
+            File blobFile = join(blobsDir, blobID.toHex());
+            if (!blobFile.exists()) {
+                atomicWriteObject(blobFile, new Blob(content));
+                maintenance.recordNewObjects(1);
+            }
+            plan.staged.put(entry.getKey(), blobID);
+        }
+        plan.checkouts.entrySet().parallelStream()
+                .filter(entry -> sparseCheckout.includes(entry.getKey()))
+                .forEach(entry -> checkOutFile(entry.getKey(), entry.getValue()));
+        plan.conflicts.entrySet().parallelStream()
+                .forEach(entry -> {
+                    File conflictFile = join(workingDir, entry.getKey());
+                    conflictFile.getParentFile().mkdirs();
+                    writeContents(conflictFile, entry.getValue());
+                });
+        for (String fileName : plan.deletions) {
+            if (sparseCheckout.includes(fileName)) {
+                deleteWorkingFile(fileName);
+            }
+        }
+    }
+
+    private byte[] conflictContent(ObjectId headCommitBlobID, ObjectId givenCommitBlobID) {
+        String headBlobContent = "";
+        if (headCommitBlobID != null) {
+            Blob headBlob = readObject(getBlobFile(headCommitBlobID), Blob.class);
+            headBlobContent = new String(headBlob.getContent(),
+                    java.nio.charset.StandardCharsets.UTF_8);
+        }
+        String givenBlobContent = "";
+        if (givenCommitBlobID != null) {
+            Blob givenBlob = readObject(getBlobFile(givenCommitBlobID), Blob.class);
+            givenBlobContent = new String(givenBlob.getContent(),
+                    java.nio.charset.StandardCharsets.UTF_8);
+        }
+        String conflict = "<<<<<<< HEAD\n"
+                + headBlobContent
+                + "=======\n"
+                + givenBlobContent
+                + ">>>>>>>\n";
+        return conflict.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * the latest common ancestor of the two commits: of all common ancestors,
+     * the ones which are not a strict ancestor of another common ancestor,
+     * taking the one closest to headCommitID
+     */
+    private String getSplitPointID(String givenBranchHeadCommitID, String headCommitID) {
+        ObjectIdSet givenAncestors = getAllParent(givenBranchHeadCommitID);
+        /* common ancestors in breadth-first order from headCommitID */
+        List<ObjectId> commonAncestors = new ArrayList<>();
+        ObjectIdSet visited = new ObjectIdSet();
+        ArrayDeque<ObjectId> toVisit = new ArrayDeque<>();
+        toVisit.add(ObjectId.fromHex(headCommitID));
+        while (!toVisit.isEmpty()) {
+            ObjectId commitID = toVisit.poll();
+            if (!visited.add(commitID)) {
+                continue;
+            }
+            if (givenAncestors.contains(commitID)) {
+                commonAncestors.add(commitID);
+            }
+            toVisit.addAll(getParentIDs(commitID));
+        }
+        /* every strict ancestor of a common ancestor is not a split point */
+        ObjectIdSet notSplitPoints = new ObjectIdSet();
+        for (ObjectId commitID : commonAncestors) {
+            ArrayDeque<ObjectId> strictAncestors = new ArrayDeque<>(getParentIDs(commitID));
+            while (!strictAncestors.isEmpty()) {
+                ObjectId ancestorID = strictAncestors.poll();
+                if (notSplitPoints.add(ancestorID)) {
+                    strictAncestors.addAll(getParentIDs(ancestorID));
+                }
+            }
+        }
+        for (ObjectId commitID : commonAncestors) {
+            if (!notSplitPoints.contains(commitID)) {
+                return commitID.toHex();
+            }
+        }
+        return null;
+    }
+
+    private ObjectIdSet getAllParent(String givenHeadCommitID) {
+        ObjectIdSet visited = new ObjectIdSet();
+        ArrayDeque<ObjectId> toVisit = new ArrayDeque<>();
+        toVisit.push(ObjectId.fromHex(givenHeadCommitID));
+        while (!toVisit.isEmpty()) {
+            ObjectId commitID = toVisit.pop();
+            if (visited.add(commitID)) {
+                toVisit.addAll(getParentIDs(commitID));
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * the parents of a commit, read from the commit graph; only a commit
+     * without an entry yet (fetched, not yet maintained) is deserialized
+     */
+    private List<ObjectId> getParentIDs(ObjectId commitID) {
+        CommitGraph.Entry entry = commitGraph.get(commitID);
+        if (entry != null) {
+            List<ObjectId> parentIDs = new ArrayList<>(2);
+            if (entry.getParentID() != null) {
+                parentIDs.add(entry.getParentID());
+            }
+            if (entry.getSecondParentID() != null) {
+                parentIDs.add(entry.getSecondParentID());
+            }
+            return parentIDs;
+        }
+        Commit commit = getCommitByID(commitID.toHex());
+        if (commit == null) {
+            throw error("Missing commit %s.", commitID.toHex());
+        }
+        List<ObjectId> parentIDs = new ArrayList<>(2);
+        if (commit.getParentID() != null) {
+            parentIDs.add(ObjectId.fromHex(commit.getParentID()));
+        }
+        if (commit.getSecondParentID() != null) {
+            parentIDs.add(ObjectId.fromHex(commit.getSecondParentID()));
+        }
+        return parentIDs;
+    }
+}
@@ -1,5 +1,6 @@
 package gitlet;
 
+import java.util.Set;
 
 /** Driver class for Gitlet, a subset of the Git version-control system.
  *  @author Lyrine Yang
@@ -9,6 +10,10 @@ package gitlet;
 
 public class Main {
 
+    /** Commands after which background maintenance may be due. */
+    private static final Set<String> WRITE_COMMANDS = Set.of("add", "commit", "rm",
+            "checkout", "reset", "merge", "fetch", "pull", "clone", "bundle");
+
     /**
      * Usage: java gitlet.Main ARGS, where ARGS contains
      * <COMMAND> <OPERAND1> <OPERAND2> ...
@@ -28,11 +33,24 @@ public class Main {
             System.exit(0);
         }
         String firstArg = args[0];
-        if (!firstArg.equals("init") && !Repository.GITLET_DIR.exists()) {
+        if (!firstArg.equals("init") && !firstArg.equals("clone")
+                && !Repository.GITLET_DIR.exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
             System.exit(0);
         }
-        switch (firstArg) {
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+            return;
+        }
+        if (WRITE_COMMANDS.contains(firstArg)) {
+            Repository.scheduleMaintenance();
+        }
+    }
+
+    private static void run(String[] args) {
+        switch (args[0]) {
             case "init":
                 argsCheck(args, 1);
                 Repository.init();
@@ -50,12 +68,20 @@ public class Main {
                 Repository.remove(args[1]);
                 break;
             case "log":
-                argsCheck(args, 1);
-                Repository.log();
+                if (args.length == 3 && args[1].equals("--")) {
+                    Repository.logFile(args[2]);
+                } else if (args.length > 1) {
+                    Repository.logRange(args);
+                } else {
+                    Repository.log();
+                }
                 break;
             case "global-log":
-                argsCheck(args, 1);
-                Repository.globalLog();
+                if (args.length > 1) {
+                    Repository.logRange(args);
+                } else {
+                    Repository.globalLog();
+                }
                 break;
             case "find":
                 argsCheck(args, 2);
@@ -68,6 +94,9 @@ public class Main {
             case "checkout":
                 Repository.checkOut(args);
                 break;
+            case "sparse-checkout":
+                Repository.sparseCheckout(args);
+                break;
             case "branch":
                 argsCheck(args, 2);
                 Repository.branch(args[1]);
@@ -80,10 +109,69 @@ public class Main {
                 argsCheck(args, 2);
                 Repository.reset(args[1]);
                 break;
+            case "maintenance":
+                argsCheck(args, 1);
+                Repository.maintenance();
+                break;
+            case "config":
+                if (args.length == 2) {
+                    Repository.config(args[1]);
+                    break;
+                }
+                argsCheck(args, 3);
+                Repository.config(args[1], args[2]);
+                break;
+            case "fsck":
+                argsCheck(args, 1);
+                Repository.fsck();
+                break;
+            case "archive":
+                if (args.length == 4 && args[1].equals("--parallel")) {
+                    Repository.archive(args[2], args[3], true);
+                } else {
+                    argsCheck(args, 3);
+                    Repository.archive(args[1], args[2], false);
+                }
+                break;
+            case "bundle":
+                Repository.bundle(args);
+                break;
+            case "pack-refs":
+                argsCheck(args, 1);
+                Repository.packRefs();
+                break;
             case "merge":
                 argsCheck(args, 2);
                 Repository.merge(args[1]);
                 break;
+            case "clone":
+                if (args.length == 3 && args[1].equals("--lazy")) {
+                    Repository.cloneRepository(args[2], true);
+                } else {
+                    argsCheck(args, 2);
+                    Repository.cloneRepository(args[1], false);
+                }
+                break;
+            case "add-remote":
+                argsCheck(args, 3);
+                Repository.addRemote(args[1], args[2]);
+                break;
+            case "rm-remote":
+                argsCheck(args, 2);
+                Repository.rmRemote(args[1]);
+                break;
+            case "push":
+                argsCheck(args, 3);
+                Repository.push(args[1], args[2]);
+                break;
+            case "fetch":
+                argsCheck(args, 3);
+                Repository.fetch(args[1], args[2]);
+                break;
+            case "pull":
+                argsCheck(args, 3);
+                Repository.pull(args[1], args[2]);
+                break;
             default:
                 System.out.println("No command with that name exists.");
         }
@@ -0,0 +1,320 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Background upkeep of a gitlet directory.
+ *
+ *  After every command that writes, isNeeded() compares a few numbers
+ *  against their limits: how many object files writers have recorded since
+ *  the last run, how many bytes of unreferenced blobs the last run found too
+ *  young to prune, and how long ago it ran. Writers record their new
+ *  objects by appending one byte each to new-objects, so the check is the
+ *  length of one file, however many objects the repository holds. If one is
+ *  over its limit, schedule() starts "gitlet.Main maintenance" as a
+ *  detached, low-priority process, so the command that triggered it
+ *  returns at once.
+ *
+ *  A run holds an exclusive lock on maintenance.lock (a second run quits at
+ *  once), and the WriterLock of the repository while it changes refs, the
+ *  commit graph or the blobs. It packs loose refs, adds commit-graph
+ *  entries for commits which lack one (fetched or cloned commits), and
+ *  deletes blob files which no commit and no staged file refers to, such as
+ *  earlier versions of a file that was added several times. While a bulk
+ *  import has left its import-journal behind, a run does nothing, since
+ *  the refs it would pack are the ones the next writer rolls back. Commits
+ *  are never pruned, since global-log, find and reset reach every commit
+ *  ever made, and blobs younger than PRUNE_GRACE_MILLIS are kept so that a
+ *  blob written by a command still in progress is never lost.
+ *  @author Lyrine Yang
+ */
+class Maintenance {
+
+    /** New object files which trigger a run. */
+    static final int NEW_OBJECT_LIMIT = 1000;
+    /** Unreferenced blob bytes left by the last run which trigger another one. */
+    static final long UNREFERENCED_BYTES_LIMIT = 64L << 20;
+    /** Age after which any new object triggers a run. */
+    static final long STALE_MILLIS = 24L * 60 * 60 * 1000;
+    /** Unreferenced blobs younger than this are kept. */
+    static final long PRUNE_GRACE_MILLIS = 60L * 60 * 1000;
+
+    private final File gitletDir;
+    private final File commitsDir;
+    private final File blobsDir;
+    /** Numbers recorded by the last run: "unreferenced-bytes", "time". */
+    private final File stateFile;
+    /** One byte per object file written since the last run. */
+    private final File newObjectsFile;
+    private final File lockFile;
+    private final File importJournalFile;
+
+    Maintenance(File gitletDir) {
+        this.gitletDir = gitletDir;
+        commitsDir = Utils.join(gitletDir, "objects", "commits");
+        blobsDir = Utils.join(gitletDir, "objects", "blobs");
+        stateFile = Utils.join(gitletDir, "maintenance");
+        newObjectsFile = Utils.join(gitletDir, "new-objects");
+        lockFile = Utils.join(gitletDir, "maintenance.lock");
+        importJournalFile = Utils.join(gitletDir, "import-journal");
+    }
+
+    /** Whether a run is due. Reads the state file and the length of
+     *  new-objects, never an object directory. */
+    boolean isNeeded() {
+        Map<String, Long> state = readState();
+        long newObjects = newObjectsFile.length();
+        long sinceLastRun = System.currentTimeMillis() - state.getOrDefault("time", 0L);
+        return newObjects > NEW_OBJECT_LIMIT
+                || state.getOrDefault("unreferenced-bytes", 0L) > UNREFERENCED_BYTES_LIMIT
+                || (newObjects > 0 && sinceLastRun > STALE_MILLIS);
+    }
+
+    /** Record that COUNT object files were just written. The caller holds
+     *  the WriterLock of the repository. */
+    void recordNewObjects(int count) {
+        if (count <= 0) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(newObjectsFile, true)) {
+            out.write(new byte[count]);
+        } catch (IOException excp) {
+            /* maintenance is an optimization; the command itself succeeded */
+            return;
+        }
+    }
+
+    /** Start a run in a detached process at the lowest priority, with
+     *  WORKINGDIR as its working directory, unless one is running. */
+    void schedule(File workingDir) {
+        if (isLocked()) {
+            return;
+        }
+        List<String> command = new ArrayList<>();
+        File nice = new File("/usr/bin/nice");
+        if (nice.canExecute()) {
+            command.add(nice.getPath());
+            command.add("-n19");
+        }
+        command.add(Utils.join(System.getProperty("java.home"), "bin", "java").getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("gitlet.Main");
+        command.add("maintenance");
+        try {
+            new ProcessBuilder(command)
+                    .directory(workingDir)
+                    .redirectInput(ProcessBuilder.Redirect.from(new File(
+                            System.getProperty("os.name").startsWith("Windows")
+                                    ? "NUL" : "/dev/null")))
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+        } catch (IOException excp) {
+            /* maintenance is an optimization; the command itself succeeded */
+            return;
+        }
+    }
+
+    /** Run every task, unless another run holds the lock or a bulk import
+     *  has not been rolled back. Returns whether this run happened. */
+    boolean run() {
+        try (RandomAccessFile lock = new RandomAccessFile(lockFile, "rw");
+             FileChannel channel = lock.getChannel()) {
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                return false;
+            }
+            int priority = Thread.currentThread().getPriority();
+            try {
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                WriterLock writerLock = WriterLock.of(gitletDir);
+                writerLock.lock();
+                List<String> commitIDs;
+                try {
+                    if (importJournalFile.exists()) {
+                        /* a bulk import died; the next writer rolls it back */
+                        return false;
+                    }
+                    /* objects written from now on count towards the next run */
+                    newObjectsFile.delete();
+                    commitIDs = listCommits();
+                    new Refs(gitletDir).pack();
+                    refreshCommitGraph(commitIDs);
+                    refreshTimeIndex(commitIDs);
+                } finally {
+                    writerLock.unlock();
+                }
+                long unreferencedBytes = pruneBlobs(commitIDs, writerLock);
+                writeState(unreferencedBytes);
+            } finally {
+                /* the caller may be a thread of an embedding application */
+                Thread.currentThread().setPriority(priority);
+                fileLock.release();
+            }
+            return true;
+        } catch (OverlappingFileLockException excp) {
+            return false;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Record the repository as freshly maintained, as for a new one. */
+    void recordFresh() {
+        newObjectsFile.delete();
+        writeState(0);
+    }
+
+    private boolean isLocked() {
+        if (!lockFile.exists()) {
+            return false;
+        }
+        try (RandomAccessFile lock = new RandomAccessFile(lockFile, "rw");
+             FileChannel channel = lock.getChannel()) {
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                return true;
+            }
+            fileLock.release();
+            return false;
+        } catch (OverlappingFileLockException excp) {
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Add a commit-graph entry for every commit without one. */
+    private void refreshCommitGraph(List<String> commitIDs) {
+        CommitGraph graph = new CommitGraph(gitletDir);
+        for (String commitID : commitIDs) {
+            ObjectId id = ObjectId.fromHex(commitID);
+            if (graph.contains(id)) {
+                continue;
+            }
+            Commit commit = Utils.readObject(Utils.join(commitsDir, commitID), Commit.class);
+            Map<String, ObjectId> parentMap = commit.getParentID() == null
+                    ? new HashMap<>()
+                    : Utils.readObject(Utils.join(commitsDir, commit.getParentID()),
+                            Commit.class).getNameIDMap();
+            graph.add(id, commit, CommitGraph.changedPaths(parentMap, commit));
+        }
+    }
+
+    /** Rewrite the time index sorted, with the commits of COMMITIDS it lacks,
+     *  unless it is sorted and complete already. */
+    private void refreshTimeIndex(List<String> commitIDs) {
+        TimeIndex index = new TimeIndex(gitletDir);
+        Map<ObjectId, Long> times = index.readAll();
+        if (index.isSorted() && index.isComplete() && times.size() == index.size()
+                && times.size() >= commitIDs.size()) {
+            return;
+        }
+        /* the records of commits made since commitIDs was listed are kept */
+        for (String commitID : commitIDs) {
+            ObjectId id = ObjectId.fromHex(commitID);
+            if (!times.containsKey(id)) {
+                times.put(id, Utils.readObject(Utils.join(commitsDir, commitID), Commit.class)
+                        .getEpochMillis());
+            }
+        }
+        index.rewrite(times);
+    }
+
+    /** Delete unreferenced blob files older than the grace period. Returns
+     *  the bytes of the unreferenced ones which had to be kept. The commits
+     *  listed before are read without the writer lock; commits made since
+     *  and the staging area are read, and blobs deleted, while holding it,
+     *  so a blob a writer just staged again is never lost. */
+    private long pruneBlobs(List<String> commitIDs, WriterLock writerLock) {
+        Set<String> referencedBlobs = new HashSet<>();
+        addBlobsOf(commitIDs, referencedBlobs);
+        writerLock.lock();
+        try {
+            List<String> newCommitIDs = listCommits();
+            newCommitIDs.removeAll(new HashSet<>(commitIDs));
+            addBlobsOf(newCommitIDs, referencedBlobs);
+            addStagedBlobs(referencedBlobs);
+            long cutoff = System.currentTimeMillis() - PRUNE_GRACE_MILLIS;
+            long keptBytes = 0;
+            for (String name : Utils.plainFilenamesIn(blobsDir)) {
+                if (name.startsWith(".") || referencedBlobs.contains(name)) {
+                    continue;
+                }
+                File file = Utils.join(blobsDir, name);
+                if (file.lastModified() < cutoff) {
+                    file.delete();
+                } else {
+                    keptBytes += file.length();
+                }
+            }
+            return keptBytes;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void addBlobsOf(List<String> commitIDs, Set<String> referencedBlobs) {
+        for (String commitID : commitIDs) {
+            Commit commit = Utils.readObject(Utils.join(commitsDir, commitID), Commit.class);
+            for (ObjectId blobID : commit.getNameIDMap().values()) {
+                referencedBlobs.add(blobID.toHex());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addStagedBlobs(Set<String> referencedBlobs) {
+        File indexFile = Utils.join(gitletDir, "index");
+        if (indexFile.exists()) {
+            Map<String, Object> stagingArea = Utils.readObject(indexFile, HashMap.class);
+            for (Object blobID : stagingArea.values()) {
+                referencedBlobs.add(blobID.toString());
+            }
+        }
+    }
+
+    /** The commit files, leaving out temporary files of writes in progress. */
+    private List<String> listCommits() {
+        List<String> commitIDs = new ArrayList<>(Utils.plainFilenamesIn(commitsDir));
+        commitIDs.removeIf(commitID -> commitID.startsWith("."));
+        return commitIDs;
+    }
+
+    private Map<String, Long> readState() {
+        Map<String, Long> state = new HashMap<>();
+        if (!stateFile.isFile()) {
+            return state;
+        }
+        for (String line : Utils.readContentsAsString(stateFile).split("\n")) {
+            int separator = line.indexOf('=');
+            if (separator > 0) {
+                try {
+                    state.put(line.substring(0, separator),
+                            Long.parseLong(line.substring(separator + 1).trim()));
+                } catch (NumberFormatException excp) {
+                    continue;
+                }
+            }
+        }
+        return state;
+    }
+
+    private void writeState(long unreferencedBytes) {
+        Utils.atomicWriteContents(stateFile,
+                "unreferenced-bytes=" + unreferencedBytes + "\n",
+                "time=" + System.currentTimeMillis() + "\n");
+    }
+}
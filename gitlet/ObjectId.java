@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** The 20-byte SHA-1 name of a blob or commit, held as two longs and an int
+ *  instead of a 40-character String. IDs are converted to and from hex only
+ *  where they meet file names, branch files and output, and are public
+ *  since the public API (Commit.getNameIDMap) hands them out.
+ *  @author Lyrine Yang
+ */
+public final class ObjectId implements Serializable, Comparable<ObjectId> {
+
+    private static final long serialVersionUID = 1L;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Bytes 0-7, 8-15 and 16-19 of the SHA-1, big-endian. */
+    private final long first;
+    private final long second;
+    private final int third;
+
+    ObjectId(long first, long second, int third) {
+        this.first = first;
+        this.second = second;
+        this.third = third;
+    }
+
+    /** Return the ID written as the 40 hex digits HEX. */
+    public static ObjectId fromHex(String hex) {
+        if (hex.length() != Utils.UID_LENGTH) {
+            throw new IllegalArgumentException("not an object id: " + hex);
+        }
+        return new ObjectId(Long.parseUnsignedLong(hex.substring(0, 16), 16),
+                Long.parseUnsignedLong(hex.substring(16, 32), 16),
+                Integer.parseUnsignedInt(hex.substring(32), 16));
+    }
+
+    /** Return the ID of the 20 bytes RAW. */
+    static ObjectId fromBytes(byte[] raw) {
+        long first = 0;
+        long second = 0;
+        int third = 0;
+        for (int i = 0; i < 8; i += 1) {
+            first = (first << 8) | (raw[i] & 0xff);
+            second = (second << 8) | (raw[i + 8] & 0xff);
+        }
+        for (int i = 16; i < 20; i += 1) {
+            third = (third << 8) | (raw[i] & 0xff);
+        }
+        return new ObjectId(first, second, third);
+    }
+
+    /** Return the SHA-1 of CONTENT, as Utils.sha1 does but without the hex string. */
+    static ObjectId sha1(byte[] content) {
+        try {
+            return fromBytes(MessageDigest.getInstance("SHA-1").digest(content));
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    long first() {
+        return first;
+    }
+
+    long second() {
+        return second;
+    }
+
+    int third() {
+        return third;
+    }
+
+    /** Return the 40 hex digits of this ID. */
+    public String toHex() {
+        char[] hex = new char[Utils.UID_LENGTH];
+        for (int i = 0; i < 16; i += 1) {
+            hex[i] = HEX_DIGITS[(int) (first >>> (60 - 4 * i)) & 0xf];
+            hex[i + 16] = HEX_DIGITS[(int) (second >>> (60 - 4 * i)) & 0xf];
+        }
+        for (int i = 0; i < 8; i += 1) {
+            hex[i + 32] = HEX_DIGITS[(third >>> (28 - 4 * i)) & 0xf];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    /** SHA-1 bits are already uniformly spread, so any of them make a good hash. */
+    @Override
+    public int hashCode() {
+        return (int) first;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return first == other.first && second == other.second && third == other.third;
+    }
+
+    /** Orders IDs as their hex strings are ordered. */
+    @Override
+    public int compareTo(ObjectId other) {
+        int cmp = Long.compareUnsigned(first, other.first);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(second, other.second);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(third, other.third);
+        }
+        return cmp;
+    }
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A set of ObjectIds stored in primitive arrays with open addressing, so
+ *  that large ancestor sets hold no per-ID objects at all instead of a
+ *  HashSet node plus a String for every commit.
+ *  @author Lyrine Yang
+ */
+class ObjectIdSet implements Iterable<ObjectId> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] firsts;
+    private long[] seconds;
+    private int[] thirds;
+    private boolean[] used;
+    private int size;
+
+    ObjectIdSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        firsts = new long[capacity];
+        seconds = new long[capacity];
+        thirds = new int[capacity];
+        used = new boolean[capacity];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(ObjectId id) {
+        return used[slot(id.first(), id.second(), id.third())];
+    }
+
+    /** Add ID, returning whether it was not in the set before. */
+    boolean add(ObjectId id) {
+        return add(id.first(), id.second(), id.third());
+    }
+
+    private boolean add(long first, long second, int third) {
+        int slot = slot(first, second, third);
+        if (used[slot]) {
+            return false;
+        }
+        used[slot] = true;
+        firsts[slot] = first;
+        seconds[slot] = second;
+        thirds[slot] = third;
+        size += 1;
+        /* keep the load factor at most one half */
+        if (size * 2 > used.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /** The slot holding the ID, or the empty slot where it belongs. */
+    private int slot(long first, long second, int third) {
+        int mask = used.length - 1;
+        int slot = (int) first & mask;
+        while (used[slot]
+                && (firsts[slot] != first || seconds[slot] != second || thirds[slot] != third)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldFirsts = firsts;
+        long[] oldSeconds = seconds;
+        int[] oldThirds = thirds;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i += 1) {
+            if (oldUsed[i]) {
+                add(oldFirsts[i], oldSeconds[i], oldThirds[i]);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<ObjectId> iterator() {
+        return new Iterator<ObjectId>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < used.length && !used[from]) {
+                    from += 1;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < used.length;
+            }
+
+            @Override
+            public ObjectId next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ObjectId id = new ObjectId(firsts[next], seconds[next], thirds[next]);
+                next = advance(next + 1);
+                return id;
+            }
+        };
+    }
+}
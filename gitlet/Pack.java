@@ -0,0 +1,313 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/** A stream of commit and blob files moved between two gitlet directories.
+ *
+ *  A pack is the magic "GLPK", a version and an object count, followed by
+ *  one entry per object: a type byte, the 40-character ID, the length and
+ *  the bytes of the object file exactly as stored. It ends with the SHA-1
+ *  of everything before it. Blobs come first and every commit comes after
+ *  its parents, so a receiver which stops half way never holds a commit
+ *  without its history, and it stores an object only after checking that
+ *  it hashes to its ID. Objects are streamed through a fixed buffer on
+ *  both sides, so memory use does not depend on their size.
+ *
+ *  The objects to send are negotiated from the two sides' branch heads: the
+ *  sender walks back from the wanted commit and stops at every commit the
+ *  receiver already has, since a gitlet directory holding a commit also
+ *  holds its whole history and every blob of it.
+ *  @author Lyrine Yang
+ */
+class Pack {
+
+    private static final byte[] MAGIC = "GLPK".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    static final byte COMMIT = 1;
+    static final byte BLOB = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The commits and blobs one side has to send to the other. */
+    static class Contents {
+        final List<String> commitIDs = new ArrayList<>();
+        final List<String> blobIDs = new ArrayList<>();
+
+        int size() {
+            return commitIDs.size() + blobIDs.size();
+        }
+    }
+
+    /** Return the objects reachable from WANTID in the gitlet directory FROM
+     *  which the gitlet directory TO lacks. */
+    static Contents negotiate(File from, String wantID, File to) {
+        return collect(from, wantID, commitID -> commitFile(to, commitID).exists(),
+                commitID -> readCommit(to, commitID),
+                blobID -> blobFile(to, blobID.toHex()).exists());
+    }
+
+    /** Return the objects reachable from WANTID in the gitlet directory FROM
+     *  which are not reachable from the commits INBASE accepts, which has to
+     *  accept the ancestors of every commit it accepts. */
+    static Contents since(File from, String wantID, Predicate<String> inBase) {
+        return collect(from, wantID, inBase, commitID -> readCommit(from, commitID),
+                blobID -> false);
+    }
+
+    /** The commits reachable from WANTID in FROM down to the first ones the
+     *  receiver HASCOMMIT, and their blobs, except the blobs of those first
+     *  commits, read by READHAVE, and those it HASBLOB. */
+    private static Contents collect(File from, String wantID, Predicate<String> hasCommit,
+                                    Function<String, Commit> readHave,
+                                    Predicate<ObjectId> hasBlob) {
+        Contents missing = new Contents();
+        /* the missing commits, in the order of missing.commitIDs */
+        List<Commit> missingCommits = new ArrayList<>();
+        /* commits TO has which are parents of commits it lacks */
+        List<String> haves = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.push(wantID);
+        while (!toVisit.isEmpty()) {
+            String commitID = toVisit.pop();
+            if (!visited.add(commitID)) {
+                continue;
+            }
+            if (hasCommit.test(commitID)) {
+                haves.add(commitID);
+                continue;
+            }
+            missing.commitIDs.add(commitID);
+            Commit commit = Utils.readObject(commitFile(from, commitID), Commit.class);
+            missingCommits.add(commit);
+            if (commit.getParentID() != null) {
+                toVisit.push(commit.getParentID());
+            }
+            if (commit.getSecondParentID() != null) {
+                toVisit.push(commit.getSecondParentID());
+            }
+        }
+        /* blobs of the common commits need not be looked up on the other side */
+        Set<ObjectId> knownBlobs = new HashSet<>();
+        for (String commitID : haves) {
+            knownBlobs.addAll(readHave.apply(commitID).getNameIDMap().values());
+        }
+        Set<String> blobIDs = new LinkedHashSet<>();
+        for (Commit commit : missingCommits) {
+            for (ObjectId blobID : commit.getNameIDMap().values()) {
+                if (!knownBlobs.contains(blobID) && !hasBlob.test(blobID)) {
+                    blobIDs.add(blobID.toHex());
+                }
+            }
+        }
+        missing.blobIDs.addAll(blobIDs);
+        return missing;
+    }
+
+    /** Copy OBJECTS from gitlet directory FROM into gitlet directory TO as one
+     *  pack written to a temporary file of TO. Returns the size of the pack. */
+    static long transfer(File from, Contents objects, File to) {
+        File packFile = new File(to, "incoming-" + System.nanoTime() + ".pack");
+        try {
+            try (OutputStream out = new FileOutputStream(packFile)) {
+                write(from, objects, out);
+            }
+            try (InputStream in = new FileInputStream(packFile)) {
+                read(in, to);
+            }
+            return packFile.length();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            packFile.delete();
+        }
+    }
+
+    /** Write OBJECTS of gitlet directory FROM to OUT as a pack. */
+    static void write(File from, Contents objects, OutputStream out) throws IOException {
+        MessageDigest md = sha1Digest();
+        DigestOutputStream digestOut = new DigestOutputStream(new BufferedOutputStream(out), md);
+        DataOutputStream data = new DataOutputStream(digestOut);
+        data.write(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(objects.size());
+        for (String blobID : objects.blobIDs) {
+            writeEntry(data, BLOB, blobID, findBlobFile(from, blobID));
+        }
+        for (int i = objects.commitIDs.size() - 1; i >= 0; i -= 1) {
+            String commitID = objects.commitIDs.get(i);
+            writeEntry(data, COMMIT, commitID, commitFile(from, commitID));
+        }
+        data.flush();
+        digestOut.on(false);
+        data.write(md.digest());
+        data.flush();
+    }
+
+    private static void writeEntry(DataOutputStream data, byte type, String id,
+                                   File objectFile) throws IOException {
+        data.writeByte(type);
+        data.write(id.getBytes(StandardCharsets.US_ASCII));
+        data.writeLong(objectFile.length());
+        Files.copy(objectFile.toPath(), data);
+    }
+
+    /** Store every object of the pack read from IN into gitlet directory TO,
+     *  one at a time, each streamed into its file while it is hashed. Returns
+     *  the objects TO did not have before. Throws a GitletException if an
+     *  object or the pack itself does not match its checksum. */
+    static Contents read(InputStream in, File to) throws IOException {
+        MessageDigest md = sha1Digest();
+        DigestInputStream digestIn = new DigestInputStream(new BufferedInputStream(in), md);
+        DataInputStream data = new DataInputStream(digestIn);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC) || data.readInt() != VERSION) {
+            throw Utils.error("Not a gitlet pack.");
+        }
+        int count = data.readInt();
+        Contents stored = new Contents();
+        byte[] idBytes = new byte[Utils.UID_LENGTH];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int i = 0; i < count; i += 1) {
+            byte type = data.readByte();
+            data.readFully(idBytes);
+            String id = new String(idBytes, StandardCharsets.US_ASCII);
+            long length = data.readLong();
+            if (length < 0 || (type != COMMIT && type != BLOB)) {
+                throw Utils.error("Corrupt pack entry %s.", id);
+            }
+            File target = type == COMMIT ? commitFile(to, id) : blobFile(to, id);
+            if (target.exists()) {
+                /* read, not skipped, so that the pack checksum covers it */
+                copy(data, length, null, null, buffer);
+            } else {
+                install(data, length, target, type, id, buffer);
+                (type == COMMIT ? stored.commitIDs : stored.blobIDs).add(id);
+            }
+        }
+        digestIn.on(false);
+        byte[] checksum = new byte[md.getDigestLength()];
+        byte[] expected = md.digest();
+        data.readFully(checksum);
+        if (!Arrays.equals(checksum, expected)) {
+            throw Utils.error("Pack checksum mismatch.");
+        }
+        return stored;
+    }
+
+    /** Stream the LENGTH bytes of the object ID of TYPE from DATA into a
+     *  temporary file, hashing a commit whole and a blob from its content on,
+     *  and move it to TARGET if it hashes to ID. */
+    private static void install(DataInputStream data, long length, File target, byte type,
+                                String id, byte[] buffer) throws IOException {
+        File temp = new File(target.getParentFile(), "." + id + ".tmp");
+        try {
+            MessageDigest md = sha1Digest();
+            byte[] header = new byte[type == BLOB ? (int) Math.min(length, Blob.HEADER_LENGTH) : 0];
+            try (OutputStream out = new FileOutputStream(temp)) {
+                data.readFully(header);
+                out.write(header);
+                copy(data, length - header.length, out, md, buffer);
+            }
+            String actualID;
+            if (type == COMMIT || Blob.isHeader(header, length)) {
+                actualID = ObjectId.fromBytes(md.digest()).toHex();
+            } else {
+                /* a blob file not laid out as written today */
+                try {
+                    actualID = Utils.sha1(Utils.readObject(temp, Blob.class).getContent());
+                } catch (IllegalArgumentException excp) {
+                    actualID = null;
+                }
+            }
+            if (!id.equals(actualID)) {
+                throw Utils.error("Corrupt object %s in pack.", id);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Read LENGTH bytes from DATA through BUFFER, writing them to OUT and
+     *  adding them to MD unless those are null. */
+    private static void copy(DataInputStream data, long length, OutputStream out,
+                             MessageDigest md, byte[] buffer) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int n = (int) Math.min(remaining, buffer.length);
+            data.readFully(buffer, 0, n);
+            if (md != null) {
+                md.update(buffer, 0, n);
+            }
+            if (out != null) {
+                out.write(buffer, 0, n);
+            }
+            remaining -= n;
+        }
+    }
+
+    private static Commit readCommit(File gitletDir, String commitID) {
+        return Utils.readObject(commitFile(gitletDir, commitID), Commit.class);
+    }
+
+    static File commitFile(File gitletDir, String commitID) {
+        return Utils.join(gitletDir, "objects", "commits", commitID);
+    }
+
+    static File blobFile(File gitletDir, String blobID) {
+        return Utils.join(gitletDir, "objects", "blobs", blobID);
+    }
+
+    /** The file of the blob BLOBID of GITLETDIR: its own, or if it is a lazy
+     *  clone which has not linked it yet, that of the repository it was
+     *  cloned from, which may be a lazy clone itself. Nothing is written. */
+    static File findBlobFile(File gitletDir, String blobID) {
+        File blobFile = blobFile(gitletDir, blobID);
+        File dir = gitletDir;
+        File lazySource = Utils.join(dir, "lazy-source");
+        while (!blobFile.exists() && lazySource.isFile()) {
+            dir = new File(Utils.readContentsAsString(lazySource));
+            File sourceBlob = blobFile(dir, blobID);
+            if (sourceBlob.exists()) {
+                return sourceBlob;
+            }
+            lazySource = Utils.join(dir, "lazy-source");
+        }
+        return blobFile;
+    }
+
+    private static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+}
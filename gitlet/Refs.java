@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/** The branches of a gitlet directory.
+ *  A branch is either a loose ref, a file branches/NAME holding the commit
+ *  ID, or a line "ID NAME" of the packed-refs file. The packed-refs lines
+ *  are sorted by the UTF-8 bytes of NAME so a single branch is found by
+ *  binary search, and a loose ref overrides the packed line of the same
+ *  name. Every file is replaced with an atomic rename, never rewritten in
+ *  place.
+ *  @author Lyrine Yang
+ */
+class Refs {
+
+    /** Length of the "ID " prefix of a packed-refs line. */
+    private static final int ID_PREFIX = Utils.UID_LENGTH + 1;
+    /** Names of the temporary files of Utils.atomicWriteContents and
+     *  Utils.syncedWriteContents, ".NAME.tmpNANOS". */
+    private static final Pattern TEMP_FILE = Pattern.compile("\\..+\\.tmp\\d+");
+
+    /** Holds the loose refs. */
+    private final File branchesDir;
+    private final File packedRefsFile;
+    /** Whether a replaced file is forced to disk before write returns. */
+    private boolean sync;
+
+    Refs(File gitletDir) {
+        branchesDir = Utils.join(gitletDir, "branches");
+        packedRefsFile = Utils.join(gitletDir, "packed-refs");
+    }
+
+    void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /** Return the commit ID of branch NAME, or null if there is no such branch. */
+    String read(String name) {
+        File looseRef = Utils.join(branchesDir, name);
+        if (looseRef.isFile()) {
+            try {
+                return Utils.readContentsAsString(looseRef);
+            } catch (IllegalArgumentException excp) {
+                /* packed by a concurrent pack(), which writes packed-refs first */
+                return lookupPacked(name);
+            }
+        }
+        return lookupPacked(name);
+    }
+
+    boolean exists(String name) {
+        return read(name) != null;
+    }
+
+    /** Point branch NAME at COMMITID. */
+    void write(String name, String commitID) {
+        File looseRef = Utils.join(branchesDir, name);
+        looseRef.getParentFile().mkdirs();
+        writeFile(looseRef, commitID);
+    }
+
+    /** Point branch NAME at NEWID if it points at EXPECTEDID (null for a
+     *  branch which does not exist yet), returning whether it did. Writers
+     *  hold the WriterLock, which makes the read and the rename one step. */
+    boolean compareAndSet(String name, String expectedID, String newID) {
+        if (!Objects.equals(read(name), expectedID)) {
+            return false;
+        }
+        write(name, newID);
+        return true;
+    }
+
+    /** Remove branch NAME, whether loose, packed or both. */
+    void delete(String name) {
+        TreeMap<String, String> packed = readPacked();
+        if (packed.remove(name) != null) {
+            writePacked(packed);
+        }
+        File looseRef = Utils.join(branchesDir, name);
+        looseRef.delete();
+        File dir = looseRef.getParentFile();
+        while (!dir.equals(branchesDir) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Return every branch name mapped to its commit ID, sorted by name. */
+    TreeMap<String, String> list() {
+        /* loose refs first: a concurrent pack() writes packed-refs before
+        deleting them, so no branch can be missed */
+        TreeMap<String, String> loose = new TreeMap<>();
+        readLoose(branchesDir, "", loose);
+        TreeMap<String, String> branches = readPacked();
+        branches.putAll(loose);
+        return branches;
+    }
+
+    /** Replace all branches by BRANCHES, written as one packed-refs file. */
+    void writeAll(Map<String, String> branches) {
+        for (String name : list().keySet()) {
+            Utils.join(branchesDir, name).delete();
+        }
+        writePacked(branches);
+    }
+
+    /** The files holding the branches: every loose ref and packed-refs. */
+    List<File> files() {
+        List<File> files = new ArrayList<>();
+        for (String name : list().keySet()) {
+            File looseRef = Utils.join(branchesDir, name);
+            if (looseRef.isFile()) {
+                files.add(looseRef);
+            }
+        }
+        if (packedRefsFile.isFile()) {
+            files.add(packedRefsFile);
+        }
+        return files;
+    }
+
+    /** Move every loose ref into the packed-refs file. */
+    void pack() {
+        TreeMap<String, String> branches = list();
+        writePacked(branches);
+        for (String name : branches.keySet()) {
+            File looseRef = Utils.join(branchesDir, name);
+            /* a concurrent update of the loose ref must not be lost */
+            if (looseRef.isFile()
+                    && Utils.readContentsAsString(looseRef).equals(branches.get(name))) {
+                looseRef.delete();
+            }
+        }
+    }
+
+    private void readLoose(File dir, String prefix, Map<String, String> branches) {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            if (TEMP_FILE.matcher(entry.getName()).matches()) {
+                /* a temporary file of an update in progress */
+                continue;
+            }
+            String name = prefix + entry.getName();
+            if (entry.isDirectory()) {
+                readLoose(entry, name + "/", branches);
+            } else if (entry.isFile()) {
+                try {
+                    branches.put(name, Utils.readContentsAsString(entry));
+                } catch (IllegalArgumentException excp) {
+                    /* packed or deleted since it was listed */
+                    continue;
+                }
+            }
+        }
+    }
+
+    private TreeMap<String, String> readPacked() {
+        TreeMap<String, String> packed = new TreeMap<>();
+        if (!packedRefsFile.isFile()) {
+            return packed;
+        }
+        for (String line : Utils.readContentsAsString(packedRefsFile).split("\n")) {
+            if (line.length() > ID_PREFIX) {
+                packed.put(line.substring(ID_PREFIX), line.substring(0, Utils.UID_LENGTH));
+            }
+        }
+        return packed;
+    }
+
+    private void writePacked(Map<String, String> branches) {
+        byte[][] names = new byte[branches.size()][];
+        int i = 0;
+        for (String name : branches.keySet()) {
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            i += 1;
+        }
+        Arrays.sort(names, Arrays::compareUnsigned);
+        StringBuilder packed = new StringBuilder();
+        for (byte[] nameBytes : names) {
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            packed.append(branches.get(name)).append(' ').append(name).append('\n');
+        }
+        writeFile(packedRefsFile, packed.toString());
+    }
+
+    private void writeFile(File file, String contents) {
+        if (sync) {
+            Utils.syncedWriteContents(file, contents);
+        } else {
+            Utils.atomicWriteContents(file, contents);
+        }
+    }
+
+    /** Binary search the packed-refs file for NAME without reading all of it. */
+    private String lookupPacked(String name) {
+        if (!packedRefsFile.isFile()) {
+            return null;
+        }
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(packedRefsFile.toPath(),
+                StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            /* lo and hi are always at the start of a line */
+            int lo = 0;
+            int hi = buffer.limit();
+            while (lo < hi) {
+                int start = (lo + hi) >>> 1;
+                while (start > lo && buffer.get(start - 1) != '\n') {
+                    start -= 1;
+                }
+                int end = start;
+                while (end < hi && buffer.get(end) != '\n') {
+                    end += 1;
+                }
+                int cmp = compareName(buffer, start + ID_PREFIX, end, key);
+                if (cmp == 0) {
+                    byte[] id = new byte[Utils.UID_LENGTH];
+                    buffer.get(start, id);
+                    return new String(id, StandardCharsets.US_ASCII);
+                } else if (cmp < 0) {
+                    lo = end + 1;
+                } else {
+                    hi = start;
+                }
+            }
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static int compareName(MappedByteBuffer buffer, int from, int to, byte[] key) {
+        int length = Math.max(to - from, 0);
+        for (int i = 0; i < length && i < key.length; i += 1) {
+            int cmp = Byte.compareUnsigned(buffer.get(from + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+}
@@ -0,0 +1,207 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/** Finds the files renamed between two trees: a file of the old tree which
+ *  is missing from the new one is paired with a new file of the same or a
+ *  similar content.
+ *
+ *  Files of the same blob are paired first. The rest are compared by
+ *  MinHash sketches of their sets of lines: the share of equal minima of
+ *  two sketches estimates the share of lines the files have in common.
+ *  Instead of comparing every removed file with every added one, the
+ *  sketches are cut into bands and only files which agree on all the
+ *  minima of some band are compared. With bands of two minima, two files
+ *  sharing half of their lines are compared with probability above
+ *  99.99%, in time linear in the number of files.
+ *  @author Lyrine Yang
+ */
+class RenameDetector {
+
+    /** Minima per sketch, as BANDS bands of ROWS minima. */
+    private static final int HASHES = 64;
+    private static final int BANDS = 32;
+    private static final int ROWS = HASHES / BANDS;
+    /** One seed per minimum, each giving a different hash of every line. */
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i += 1) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private RenameDetector() {
+    }
+
+    /** Return the renames from OLDTREE to NEWTREE, old name -> new name, of
+     *  files whose estimated share of common lines is at least
+     *  THRESHOLDPERCENT. CONTENTS reads a blob. */
+    static TreeMap<String, String> detect(Map<String, ObjectId> oldTree,
+                                          Map<String, ObjectId> newTree,
+                                          Function<ObjectId, byte[]> contents,
+                                          int thresholdPercent) {
+        TreeSet<String> removed = new TreeSet<>(oldTree.keySet());
+        removed.removeAll(newTree.keySet());
+        TreeSet<String> added = new TreeSet<>(newTree.keySet());
+        added.removeAll(oldTree.keySet());
+        TreeMap<String, String> renames = new TreeMap<>();
+        if (removed.isEmpty() || added.isEmpty()) {
+            return renames;
+        }
+
+        /* the same blob under a new name */
+        HashMap<ObjectId, ArrayList<String>> removedByBlob = new HashMap<>();
+        for (String oldName : removed) {
+            removedByBlob.computeIfAbsent(oldTree.get(oldName), id -> new ArrayList<>())
+                    .add(oldName);
+        }
+        for (String newName : new ArrayList<>(added)) {
+            ArrayList<String> sameBlob = removedByBlob.get(newTree.get(newName));
+            if (sameBlob != null && !sameBlob.isEmpty()) {
+                String oldName = sameBlob.remove(0);
+                renames.put(oldName, newName);
+                removed.remove(oldName);
+                added.remove(newName);
+            }
+        }
+        if (thresholdPercent >= 100 || removed.isEmpty() || added.isEmpty()) {
+            return renames;
+        }
+
+        /* similar content: bucket the removed files by band */
+        List<String> removedNames = new ArrayList<>(removed);
+        List<long[]> removedSketches = new ArrayList<>();
+        HashMap<Long, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < removedNames.size(); i += 1) {
+            long[] sketch = sketch(contents.apply(oldTree.get(removedNames.get(i))));
+            removedSketches.add(sketch);
+            if (sketch == null) {
+                continue;
+            }
+            for (int band = 0; band < BANDS; band += 1) {
+                buckets.computeIfAbsent(bandKey(sketch, band), key -> new ArrayList<>()).add(i);
+            }
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (String newName : added) {
+            long[] sketch = sketch(contents.apply(newTree.get(newName)));
+            if (sketch == null) {
+                continue;
+            }
+            Set<Integer> compared = new HashSet<>();
+            for (int band = 0; band < BANDS; band += 1) {
+                for (int i : buckets.getOrDefault(bandKey(sketch, band), List.of())) {
+                    if (!compared.add(i)) {
+                        continue;
+                    }
+                    int similarity = similarity(sketch, removedSketches.get(i));
+                    if (similarity >= thresholdPercent) {
+                        candidates.add(new Candidate(removedNames.get(i), newName, similarity));
+                    }
+                }
+            }
+        }
+
+        /* the most similar pairs first, each file in at most one rename */
+        candidates.sort(Comparator.comparingInt((Candidate c) -> -c.similarity)
+                .thenComparing(c -> c.oldName).thenComparing(c -> c.newName));
+        Set<String> pairedNew = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            if (!renames.containsKey(candidate.oldName) && pairedNew.add(candidate.newName)) {
+                renames.put(candidate.oldName, candidate.newName);
+            }
+        }
+        return renames;
+    }
+
+    /** A removed and an added file which may be a rename. */
+    private static class Candidate {
+        private final String oldName;
+        private final String newName;
+        /* estimated share of common lines, in percent */
+        private final int similarity;
+
+        Candidate(String oldName, String newName, int similarity) {
+            this.oldName = oldName;
+            this.newName = newName;
+            this.similarity = similarity;
+        }
+    }
+
+    /** The MinHash sketch of the set of lines of CONTENT, or null if it has
+     *  no lines, since empty files are like each other and nothing else. */
+    private static long[] sketch(byte[] content) {
+        if (content.length == 0) {
+            return null;
+        }
+        long[] minima = new long[HASHES];
+        Arrays.fill(minima, Long.MAX_VALUE);
+        int start = 0;
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') {
+                end += 1;
+            }
+            long lineHash = lineHash(content, start, end);
+            for (int i = 0; i < HASHES; i += 1) {
+                long hash = mix(lineHash ^ SEEDS[i]);
+                if (hash < minima[i]) {
+                    minima[i] = hash;
+                }
+            }
+            start = end + 1;
+        }
+        return minima;
+    }
+
+    private static int similarity(long[] sketch, long[] other) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i += 1) {
+            if (sketch[i] == other[i]) {
+                equal += 1;
+            }
+        }
+        return equal * 100 / HASHES;
+    }
+
+    /** The minima of band BAND of SKETCH hashed together with the band number. */
+    private static long bandKey(long[] sketch, int band) {
+        long key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i += 1) {
+            key = mix(key * 31 + sketch[i]);
+        }
+        return key;
+    }
+
+    /** 64-bit FNV-1a of CONTENT[START, END), ignoring a trailing '\r'. */
+    private static long lineHash(byte[] content, int start, int end) {
+        if (end > start && content[end - 1] == '\r') {
+            end -= 1;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i += 1) {
+            hash = (hash ^ (content[i] & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** The finalizer of SplitMix64, which spreads every input bit over the output. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The paths of a sparse checkout: the only tracked files that checkout,
+ *  reset and merge write into the working tree.
+ *
+ *  The patterns are kept in the sparse-checkout file of the gitlet
+ *  directory, one per line, with the syntax of .gitletignore: a file is
+ *  included if a pattern matches it or one of its directories. Without the
+ *  file, or with no patterns in it, every file is included. Files outside
+ *  the patterns stay tracked and are carried from commit to commit; their
+ *  blobs are just never read into the working tree.
+ *  @author Lyrine Yang
+ */
+class SparseCheckout {
+
+    /** Name of the patterns file in the gitlet directory. */
+    static final String FILE_NAME = "sparse-checkout";
+
+    private final List<WorkingTreeScanner.IgnoreRule> rules;
+
+    SparseCheckout(File gitletDir) {
+        rules = WorkingTreeScanner.readRules(Utils.join(gitletDir, FILE_NAME));
+    }
+
+    /** Whether only some files are checked out. */
+    boolean isEnabled() {
+        return !rules.isEmpty();
+    }
+
+    /** Whether the tracked file FILENAME belongs in the working tree. */
+    boolean includes(String fileName) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        int slash = fileName.indexOf('/');
+        while (slash >= 0) {
+            if (matches(fileName.substring(0, slash), true)) {
+                return true;
+            }
+            slash = fileName.indexOf('/', slash + 1);
+        }
+        return matches(fileName, false);
+    }
+
+    /** The entries of TREE whose files are included. */
+    TreeMap<String, ObjectId> filter(Map<String, ObjectId> tree) {
+        TreeMap<String, ObjectId> included = new TreeMap<>();
+        for (Map.Entry<String, ObjectId> entry : tree.entrySet()) {
+            if (includes(entry.getKey())) {
+                included.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return included;
+    }
+
+    private boolean matches(String path, boolean isDirectory) {
+        for (WorkingTreeScanner.IgnoreRule rule : rules) {
+            if (rule.matches(path, isDirectory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
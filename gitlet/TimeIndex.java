@@ -0,0 +1,213 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/** The time-index side file of a gitlet directory: the commit time of every
+ *  commit, so that date-range queries read only the commits in the range.
+ *
+ *  The file is a header, then fixed-size records of a commit time
+ *  (milliseconds since the epoch) and a commit ID. The header is the number
+ *  of sorted records, with its sign bit set if the file is complete: if it
+ *  has a record of every commit of the repository. The sorted records are
+ *  ordered by time and found by binary search; records after them are
+ *  appended as commits are made or fetched, in any order, and are scanned.
+ *  Appending keeps a complete file complete. A file created by the first
+ *  commit of an older repository is not, and queries read every commit
+ *  instead until maintenance rewrites it with every record sorted and the
+ *  commits it lacks added, or init starts it complete.
+ *  @author Lyrine Yang
+ */
+class TimeIndex {
+
+    private static final int HEADER_SIZE = Long.BYTES;
+    /** The bit of the header which marks a complete file. */
+    private static final long COMPLETE = Long.MIN_VALUE;
+    /** Time, then the three parts of the commit ID. */
+    private static final int RECORD_SIZE = 3 * Long.BYTES + Integer.BYTES;
+
+    private final File indexFile;
+
+    TimeIndex(File gitletDir) {
+        indexFile = Utils.join(gitletDir, "time-index");
+    }
+
+    /** The number of records, counting a commit appended twice twice. */
+    long size() {
+        long length = indexFile.length();
+        return length < HEADER_SIZE ? 0 : (length - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /** Whether every record is sorted, none appended since the last rewrite. */
+    boolean isSorted() {
+        return size() == 0 || (readHeader() & ~COMPLETE) == size();
+    }
+
+    /** Whether the file has a record of every commit of the repository. */
+    boolean isComplete() {
+        return indexFile.length() >= HEADER_SIZE && (readHeader() & COMPLETE) != 0;
+    }
+
+    /** Append the record of the commit COMMITID made at TIME. */
+    void add(ObjectId commitID, long time) {
+        boolean created = !indexFile.exists();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFile, true)))) {
+            if (created) {
+                out.writeLong(0);
+            }
+            out.writeLong(time);
+            out.writeLong(commitID.first());
+            out.writeLong(commitID.second());
+            out.writeInt(commitID.third());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The IDs of the commits made from SINCE to UNTIL, both included, newest
+     *  first. */
+    List<ObjectId> between(long since, long until) {
+        List<Record> found = new ArrayList<>();
+        if (size() == 0) {
+            return new ArrayList<>();
+        }
+        try (FileChannel in = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long records = (in.size() - HEADER_SIZE) / RECORD_SIZE;
+            long sorted = Math.min(readLong(in, 0) & ~COMPLETE, records);
+            /* the first sorted record not older than since */
+            long low = 0;
+            long high = sorted;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                if (readLong(in, offset(middle)) < since) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            readRecords(in, low, sorted, buffer, since, until, true, found);
+            readRecords(in, sorted, records, buffer, since, until, false, found);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        found.sort(Comparator.comparingLong((Record r) -> r.time).reversed());
+        LinkedHashSet<ObjectId> commitIDs = new LinkedHashSet<>();
+        for (Record record : found) {
+            commitIDs.add(record.commitID);
+        }
+        return new ArrayList<>(commitIDs);
+    }
+
+    /** The time of every commit in the file, by ID. */
+    Map<ObjectId, Long> readAll() {
+        List<Record> found = new ArrayList<>();
+        if (size() > 0) {
+            try (FileChannel in = FileChannel.open(indexFile.toPath(),
+                    StandardOpenOption.READ)) {
+                long records = (in.size() - HEADER_SIZE) / RECORD_SIZE;
+                readRecords(in, 0, records, ByteBuffer.allocate(RECORD_SIZE * 1024),
+                        Long.MIN_VALUE, Long.MAX_VALUE, false, found);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        Map<ObjectId, Long> times = new HashMap<>();
+        for (Record record : found) {
+            times.put(record.commitID, record.time);
+        }
+        return times;
+    }
+
+    /** Replace the file by the records of TIMES, which has the time of every
+     *  commit of the repository, all of them sorted, and mark it complete. */
+    void rewrite(Map<ObjectId, Long> times) {
+        List<Record> records = new ArrayList<>();
+        for (Map.Entry<ObjectId, Long> entry : times.entrySet()) {
+            records.add(new Record(entry.getValue(), entry.getKey()));
+        }
+        records.sort(Comparator.comparingLong(r -> r.time));
+        ByteBuffer contents = ByteBuffer.allocate(HEADER_SIZE + records.size() * RECORD_SIZE);
+        contents.putLong(records.size() | COMPLETE);
+        for (Record record : records) {
+            contents.putLong(record.time);
+            contents.putLong(record.commitID.first());
+            contents.putLong(record.commitID.second());
+            contents.putInt(record.commitID.third());
+        }
+        Utils.atomicWriteContents(indexFile, (Object) contents.array());
+    }
+
+    /** Add the records FROM to TO of IN made from SINCE to UNTIL to FOUND,
+     *  stopping at the first one after UNTIL if they are SORTED. */
+    private static void readRecords(FileChannel in, long from, long to, ByteBuffer buffer,
+                                    long since, long until, boolean sorted,
+                                    List<Record> found) throws IOException {
+        long record = from;
+        while (record < to) {
+            int count = (int) Math.min(to - record, buffer.capacity() / RECORD_SIZE);
+            buffer.clear().limit(count * RECORD_SIZE);
+            long position = offset(record);
+            while (buffer.hasRemaining() && in.read(buffer, position + buffer.position()) >= 0) {
+                continue;
+            }
+            buffer.flip();
+            for (int i = 0; i < count; i += 1) {
+                long time = buffer.getLong();
+                ObjectId commitID = new ObjectId(buffer.getLong(), buffer.getLong(),
+                        buffer.getInt());
+                if (time > until && sorted) {
+                    return;
+                }
+                if (time >= since && time <= until) {
+                    found.add(new Record(time, commitID));
+                }
+            }
+            record += count;
+        }
+    }
+
+    private long readHeader() {
+        try (FileChannel in = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            return readLong(in, 0);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    private static long offset(long record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private static long readLong(FileChannel in, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && in.read(buffer, position + buffer.position()) >= 0) {
+            continue;
+        }
+        return buffer.getLong(0);
+    }
+
+    /** One commit and its time. */
+    private static class Record {
+        private final long time;
+        private final ObjectId commitID;
+
+        Record(long time, ObjectId commitID) {
+            this.time = time;
+            this.commitID = commitID;
+        }
+    }
+}
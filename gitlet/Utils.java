@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -9,8 +10,11 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -136,6 +140,62 @@ class Utils {
         }
     }
 
+    /** Write the result of concatenating the bytes in CONTENTS to FILE as
+     *  writeContents does, but into a temporary file next to FILE which is
+     *  then renamed over FILE, so that readers see either the old or the
+     *  new contents and never a partial write.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void atomicWriteContents(File file, Object... contents) {
+        File temp = new File(file.getParentFile(),
+                             "." + file.getName() + ".tmp" + System.nanoTime());
+        try {
+            writeContents(temp, contents);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Write CONTENTS to FILE as atomicWriteContents does, forcing the new
+     *  contents to disk before the rename and the rename after it, so that
+     *  once this returns the new FILE survives a power loss.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static void syncedWriteContents(File file, Object... contents) {
+        File temp = new File(file.getParentFile(),
+                             "." + file.getName() + ".tmp" + System.nanoTime());
+        try {
+            writeContents(temp, contents);
+            force(temp);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            force(file.getAbsoluteFile().getParentFile());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /** Force the contents of FILE, or the entries of directory FILE, to
+     *  disk.  Platforms which cannot open a directory force its entries
+     *  with the files themselves, so that case is not an error.  Throws
+     *  IllegalArgumentException in case of problems with a file. */
+    static void force(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -157,6 +217,11 @@ class Utils {
         writeContents(file, serialize(obj));
     }
 
+    /** Write OBJ to FILE with atomicWriteContents. */
+    static void atomicWriteObject(File file, Serializable obj) {
+        atomicWriteContents(file, serialize(obj));
+    }
+
     /* DIRECTORIES */
 
     /** Filter out all but plain files. */
@@ -190,6 +255,23 @@ class Utils {
 
     /* OTHER FILE UTILITIES */
 
+    /** Create TARGET as a hard link to SOURCE, or as a copy of it where the
+     *  file system cannot link the two.  Only safe for files that are never
+     *  rewritten in place.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static void linkOrCopy(File source, File target) {
+        try {
+            try {
+                Files.createLink(target.toPath(), source.toPath());
+            } catch (UnsupportedOperationException | IOException excp) {
+                Files.copy(source.toPath(), target.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return the concatentation of FIRST and OTHERS into a File designator,
      *  analogous to the {@link java.nio.file.Paths.#get(String, String[])}
      *  method. */
@@ -220,6 +302,19 @@ class Utils {
         }
     }
 
+    /** Returns the object of type T serialized in BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
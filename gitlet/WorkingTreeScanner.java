@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Lists the plain files of a working tree, recursively and in parallel.
+ *  Files are named by their path relative to the root with '/' separators,
+ *  which is how commits and the staging area name them.
+ *
+ *  Paths matching a rule of the .gitletignore file at the root are skipped,
+ *  and an ignored directory is never listed. Each non-blank line not
+ *  starting with '#' is a glob; a trailing '/' makes it match directories
+ *  only, and a glob containing '/' is matched against the whole relative
+ *  path while any other glob is matched against the last name only. A line
+ *  which is not a valid glob is skipped.
+ *  @author Lyrine Yang
+ */
+class WorkingTreeScanner {
+
+    /** Name of the ignore file at the root of the working tree. */
+    static final String IGNORE_FILE = ".gitletignore";
+
+    /** The working tree root. */
+    private final File root;
+    private final List<IgnoreRule> rules;
+
+    WorkingTreeScanner(File root) {
+        this.root = root;
+        this.rules = readRules(new File(root, IGNORE_FILE));
+    }
+
+    /** Returns the relative paths of all files not ignored, in
+     *  lexicographic order. */
+    List<String> scan() {
+        return scan("");
+    }
+
+    /** Returns the relative paths of all files not ignored under the
+     *  directory DIRNAME (relative to the root, "" for the root itself), in
+     *  lexicographic order. */
+    List<String> scan(String dirName) {
+        if (!dirName.isEmpty() && isIgnored(dirName, true)) {
+            return new ArrayList<>();
+        }
+        File dir = dirName.isEmpty() ? root : Utils.join(root, dirName);
+        List<String> files = ForkJoinPool.commonPool().invoke(new ScanTask(dir, dirName));
+        Collections.sort(files);
+        return files;
+    }
+
+    /** Whether the file FILENAME is hidden from the working tree, either by
+     *  a rule of its own or because one of its directories is ignored. */
+    boolean isIgnoredFile(String fileName) {
+        int slash = fileName.indexOf('/');
+        while (slash >= 0) {
+            if (isIgnored(fileName.substring(0, slash), true)) {
+                return true;
+            }
+            slash = fileName.indexOf('/', slash + 1);
+        }
+        return isIgnored(fileName, false);
+    }
+
+    private boolean isIgnored(String path, boolean isDirectory) {
+        if (path.equals(".gitlet") || path.startsWith(".gitlet/")) {
+            return true;
+        }
+        for (IgnoreRule rule : rules) {
+            if (rule.matches(path, isDirectory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Lists one directory and forks a subtask for every subdirectory. */
+    private class ScanTask extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        /* path of dir relative to root, "" for the root */
+        private final String dirName;
+
+        ScanTask(File dir, String dirName) {
+            this.dir = dir;
+            this.dirName = dirName;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> files = new ArrayList<>();
+            File[] entries = dir.listFiles();
+            if (entries == null) {
+                return files;
+            }
+            List<ScanTask> subtasks = new ArrayList<>();
+            for (File entry : entries) {
+                String name = dirName.isEmpty()
+                        ? entry.getName() : dirName + "/" + entry.getName();
+                if (entry.isDirectory()) {
+                    if (!Files.isSymbolicLink(entry.toPath()) && !isIgnored(name, true)) {
+                        ScanTask subtask = new ScanTask(entry, name);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    }
+                } else if (entry.isFile() && !isIgnored(name, false)) {
+                    files.add(name);
+                }
+            }
+            for (ScanTask subtask : subtasks) {
+                files.addAll(subtask.join());
+            }
+            return files;
+        }
+    }
+
+    /** The rules of IGNOREFILE, or none if there is no such file. Lines
+     *  which are not valid globs are skipped. */
+    static List<IgnoreRule> readRules(File ignoreFile) {
+        List<IgnoreRule> rules = new ArrayList<>();
+        if (!ignoreFile.isFile()) {
+            return rules;
+        }
+        for (String line : Utils.readContentsAsString(ignoreFile).split("\n")) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(new IgnoreRule(pattern));
+            } catch (IllegalArgumentException excp) {
+                continue;
+            }
+        }
+        return rules;
+    }
+
+    /** One line of the ignore file, or of the sparse-checkout file, which
+     *  has the same syntax. The constructor throws IllegalArgumentException
+     *  if the line is not a valid glob. */
+    static class IgnoreRule {
+        private final PathMatcher matcher;
+        private final boolean directoryOnly;
+        private final boolean wholePath;
+
+        IgnoreRule(String pattern) {
+            directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            wholePath = pattern.contains("/");
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        }
+
+        boolean matches(String path, boolean isDirectory) {
+            if (directoryOnly && !isDirectory) {
+                return false;
+            }
+            String name = wholePath ? path : path.substring(path.lastIndexOf('/') + 1);
+            return matcher.matches(Paths.get(name));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package gitlet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** Keeps the untracked files of a working tree up to date from file system
+ *  events, for long-running processes that call status many times. Every
+ *  directory not ignored by .gitletignore is watched, and only the paths
+ *  named by events are re-examined; an OVERFLOW event, a new directory, an
+ *  edited ignore file, or a change of the tracked files (new index or head
+ *  commit) falls back to a full scan of the tree.
+ *  @author Lyrine Yang
+ */
+class WorkingTreeWatcher implements Closeable {
+
+    /** The watched working directory. */
+    private final File dir;
+    private final WatchService watchService;
+    /** Directory watched by each key, relative to dir ("" for dir itself). */
+    private final Map<WatchKey, String> watchedDirs = new HashMap<>();
+    private WorkingTreeScanner scanner;
+    /** Paths named by events since the last query. */
+    private final Set<String> dirtyPaths = new HashSet<>();
+    /** Whether the next query has to scan the whole tree. */
+    private boolean needsFullScan = true;
+    /** Identifies the index and head commit the tracked set was read from. */
+    private String trackingKey;
+    private Set<String> trackedFiles = new HashSet<>();
+    private final HashSet<String> untrackedFiles = new HashSet<>();
+
+    WorkingTreeWatcher(File dir) throws IOException {
+        this.dir = dir;
+        this.scanner = new WorkingTreeScanner(dir);
+        watchService = dir.toPath().getFileSystem().newWatchService();
+        registerTree(dir, "");
+    }
+
+    /** Watch DIRECTORY, named DIRNAME, and the directories below it. */
+    private void registerTree(File directory, String dirName) throws IOException {
+        WatchKey key = directory.toPath().register(watchService,
+                ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        watchedDirs.put(key, dirName);
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        for (File entry : entries) {
+            String name = dirName.isEmpty()
+                    ? entry.getName() : dirName + "/" + entry.getName();
+            if (entry.isDirectory() && !Files.isSymbolicLink(entry.toPath())
+                    && !scanner.isIgnoredFile(name)) {
+                registerTree(entry, name);
+            }
+        }
+    }
+
+    /** Return the untracked files of the working directory. KEY changes
+     *  whenever the set of tracked files may have changed, in which case
+     *  TRACKED is asked for the new set. */
+    synchronized HashSet<String> untrackedFiles(String key, Supplier<Set<String>> tracked) {
+        drainEvents();
+        if (!key.equals(trackingKey)) {
+            trackedFiles = tracked.get();
+            trackingKey = key;
+            needsFullScan = true;
+        }
+        if (needsFullScan) {
+            untrackedFiles.clear();
+            for (String fileName : scanner.scan()) {
+                classify(fileName);
+            }
+        } else {
+            for (String fileName : dirtyPaths) {
+                classify(fileName);
+            }
+        }
+        dirtyPaths.clear();
+        needsFullScan = false;
+        return new HashSet<>(untrackedFiles);
+    }
+
+    private void classify(String fileName) {
+        if (Utils.join(dir, fileName).isFile() && !trackedFiles.contains(fileName)
+                && !scanner.isIgnoredFile(fileName)) {
+            untrackedFiles.add(fileName);
+        } else {
+            untrackedFiles.remove(fileName);
+        }
+    }
+
+    /** Move every pending event into dirtyPaths without blocking. */
+    private void drainEvents() {
+        WatchKey key;
+        try {
+            key = watchService.poll();
+        } catch (ClosedWatchServiceException excp) {
+            throw Utils.error("Working tree watcher is closed.");
+        }
+        while (key != null) {
+            String dirName = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dirName == null) {
+                    needsFullScan = true;
+                    continue;
+                }
+                String fileName = dirName.isEmpty()
+                        ? event.context().toString() : dirName + "/" + event.context();
+                if (fileName.equals(".gitlet") || fileName.startsWith(".gitlet/")) {
+                    continue;
+                }
+                if (fileName.equals(WorkingTreeScanner.IGNORE_FILE)) {
+                    scanner = new WorkingTreeScanner(dir);
+                    needsFullScan = true;
+                }
+                File file = Utils.join(dir, fileName);
+                if (event.kind() == ENTRY_CREATE && file.isDirectory()
+                        && !scanner.isIgnoredFile(fileName)) {
+                    /* files may have appeared in it before it was watched */
+                    registerNewDirectory(file, fileName);
+                    needsFullScan = true;
+                }
+                dirtyPaths.add(fileName);
+            }
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+                needsFullScan = true;
+            }
+            key = watchService.poll();
+        }
+    }
+
+    private void registerNewDirectory(File directory, String dirName) {
+        try {
+            registerTree(directory, dirName);
+        } catch (IOException excp) {
+            /* it may already be gone again; the full scan sees the current state */
+            needsFullScan = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,77 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The object files written by a command, forced to disk together.
+ *
+ *  Forcing every object as it is written costs one disk flush per file. In
+ *  durability mode "batch" a command records its new files here instead,
+ *  and flush() forces all of them in parallel, then each directory they
+ *  were created in once, before the command replaces the ref or index that
+ *  makes them reachable. After a power loss a ref may be older than the
+ *  last command, but never points at an object which is not on disk.
+ *
+ *  A bulk import defers every flush until it ends, so the flushes of many
+ *  commits are shared.
+ *  @author Lyrine Yang
+ */
+class WriteBatch {
+
+    /** Whether files are recorded and forced at all. */
+    private final boolean durable;
+    /** Whether sync() waits for the end of a bulk import. */
+    private boolean deferred;
+    private final Set<File> files = ConcurrentHashMap.newKeySet();
+
+    WriteBatch(boolean durable) {
+        this.durable = durable;
+    }
+
+    /** Whether refs and the index have to be forced to disk when replaced. */
+    boolean isDurable() {
+        return durable && !deferred;
+    }
+
+    /** Record FILE, just written, unless nothing is forced. */
+    void add(File file) {
+        if (durable || deferred) {
+            files.add(file);
+        }
+    }
+
+    /** Force the recorded files to disk, unless a bulk import defers it. */
+    void sync() {
+        if (!deferred) {
+            flush();
+        }
+    }
+
+    /** Record files until endDeferring(), whatever the durability mode. */
+    void startDeferring() {
+        deferred = true;
+    }
+
+    /** Stop deferring and force everything recorded since startDeferring(). */
+    void endDeferring() {
+        deferred = false;
+        flush();
+    }
+
+    private void flush() {
+        if (files.isEmpty()) {
+            return;
+        }
+        Set<File> dirs = new HashSet<>();
+        for (File file : files) {
+            dirs.add(file.getAbsoluteFile().getParentFile());
+        }
+        files.parallelStream().forEach(Utils::force);
+        for (File dir : dirs) {
+            Utils.force(dir);
+        }
+        files.clear();
+    }
+}
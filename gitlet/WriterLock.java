@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** The lock every command which changes a gitlet directory holds, so that
+ *  writers in any number of processes take turns.
+ *
+ *  Between processes it is an exclusive lock on the file "lock" of the
+ *  gitlet directory. A file lock belongs to the whole JVM, so there is one
+ *  WriterLock per directory in a process, and its ReentrantLock comes
+ *  first; it also lets a command which runs another (pull runs fetch and
+ *  merge) take the lock again. Readers never take it: every file is
+ *  replaced by an atomic rename, so they see either the old or the new
+ *  version.
+ *  @author Lyrine Yang
+ */
+class WriterLock {
+
+    /** The lock of each gitlet directory, by canonical path. */
+    private static final ConcurrentHashMap<String, WriterLock> LOCKS =
+            new ConcurrentHashMap<>();
+
+    private final File lockFile;
+    private final ReentrantLock localLock = new ReentrantLock();
+    /** Open while the file lock is held. */
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    private WriterLock(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /** The writer lock of the repository in GITLETDIR. */
+    static WriterLock of(File gitletDir) {
+        String key;
+        try {
+            key = gitletDir.getCanonicalPath();
+        } catch (IOException excp) {
+            key = gitletDir.getAbsolutePath();
+        }
+        return LOCKS.computeIfAbsent(key, k -> new WriterLock(Utils.join(gitletDir, "lock")));
+    }
+
+    /** Wait until no other writer holds the lock, then hold it. */
+    void lock() {
+        localLock.lock();
+        if (localLock.getHoldCount() > 1) {
+            return;
+        }
+        try {
+            channel = FileChannel.open(lockFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            fileLock = channel.lock();
+        } catch (IOException excp) {
+            closeChannel();
+            localLock.unlock();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** How many times the current thread holds the lock, 0 if it does not. */
+    int getHoldCount() {
+        return localLock.getHoldCount();
+    }
+
+    void unlock() {
+        if (localLock.getHoldCount() == 1) {
+            try {
+                fileLock.release();
+            } catch (IOException excp) {
+                /* closing the channel releases it as well */
+                fileLock = null;
+            }
+            closeChannel();
+        }
+        localLock.unlock();
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException excp) {
+            /* the lock is gone with the channel either way */
+            channel = null;
+        }
+        channel = null;
+        fileLock = null;
+    }
+}
@@ -0,0 +1,22 @@
+#!/bin/bash
+# Runs one of the benchmarks in testing/gitlet.
+#
+# Usage: benchmark.sh NAME [ARGS...]
+#
+# Compiles the gitlet sources together with testing/gitlet/NAME.java, which
+# sits in package gitlet to reach its package-private classes, and runs it
+# with ARGS. JAVA_OPTS is passed to the JVM.
+
+set -u
+if [ $# -lt 1 ]; then
+    echo "Usage: benchmark.sh NAME [ARGS...]"
+    exit 1
+fi
+NAME=$1
+shift
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CLASSES=$(mktemp -d)
+trap 'rm -rf "$CLASSES"' EXIT
+
+javac -nowarn -d "$CLASSES" "$ROOT"/gitlet/*.java "$ROOT/testing/gitlet/$NAME.java" || exit 1
+java ${JAVA_OPTS:-} -cp "$CLASSES" "gitlet.$NAME" "$@"
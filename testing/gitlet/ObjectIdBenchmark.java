@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/** Measures the heap held by object IDs as hex Strings and as ObjectIds.
+ *
+ *  Builds, for COUNT IDs, the file map of a commit (TreeMap from file name
+ *  to ID) and an ancestor set, once with 40-character hex Strings as
+ *  before ObjectId and once with ObjectId and ObjectIdSet. For each it
+ *  prints the bytes allocated while building it and the bytes it holds
+ *  after a full collection, per entry. Each ID is built from the form it
+ *  is stored in: a String from 40 hex bytes, as in old commit files, and
+ *  an ObjectId from the 20 bytes of the SHA-1, as deserialization does.
+ *  The file names are built once and shared, so only the IDs and the
+ *  collections are measured.
+ *
+ *  Usage: ObjectIdBenchmark [COUNT]
+ *  @author Lyrine Yang
+ */
+public class ObjectIdBenchmark {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        String[] fileNames = new String[count];
+        byte[][] hexIDs = new byte[count][];
+        byte[][] rawIDs = new byte[count][];
+        for (int i = 0; i < count; i += 1) {
+            fileNames[i] = "dir" + i % 100 + "/file" + i;
+            ObjectId id = ObjectId.sha1(ByteBuffer.allocate(4).putInt(i).array());
+            hexIDs[i] = id.toHex().getBytes(StandardCharsets.US_ASCII);
+            rawIDs[i] = ByteBuffer.allocate(20).putLong(id.first()).putLong(id.second())
+                    .putInt(id.third()).array();
+        }
+        System.out.printf("%d IDs%n", count);
+        System.out.printf("%-32s %16s %16s%n", "", "allocated/entry", "retained/entry");
+        measure("TreeMap<String, String>", count, () -> {
+            Map<String, String> map = new TreeMap<>();
+            for (int i = 0; i < count; i += 1) {
+                map.put(fileNames[i], new String(hexIDs[i], StandardCharsets.US_ASCII));
+            }
+            return map;
+        });
+        measure("TreeMap<String, ObjectId>", count, () -> {
+            Map<String, ObjectId> map = new TreeMap<>();
+            for (int i = 0; i < count; i += 1) {
+                map.put(fileNames[i], ObjectId.fromBytes(rawIDs[i]));
+            }
+            return map;
+        });
+        measure("HashSet<String>", count, () -> {
+            Set<String> set = new HashSet<>();
+            for (int i = 0; i < count; i += 1) {
+                set.add(new String(hexIDs[i], StandardCharsets.US_ASCII));
+            }
+            return set;
+        });
+        measure("ObjectIdSet", count, () -> {
+            ObjectIdSet set = new ObjectIdSet();
+            for (int i = 0; i < count; i += 1) {
+                set.add(ObjectId.fromBytes(rawIDs[i]));
+            }
+            return set;
+        });
+    }
+
+    /** Print the bytes BUILD allocates and those its result holds, per entry
+     *  of COUNT. */
+    private static void measure(String name, int count, Supplier<Object> build) {
+        /* once to load and compile the classes involved */
+        build.get();
+        long usedBefore = usedAfterGc();
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        Object result = build.get();
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        long retained = usedAfterGc() - usedBefore;
+        Reference.reachabilityFence(result);
+        System.out.printf("%-32s %16.1f %16.1f%n", name, (double) allocated / count,
+                (double) retained / count);
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
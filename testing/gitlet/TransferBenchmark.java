@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Compares fetch, which sends only what the other side lacks, with
+ *  copying the whole objects directory of a remote.
+ *
+ *  An origin repository gets FILES files and HISTORY commits, and a mirror
+ *  fetches all of it. Then, for a growing number of new commits, the
+ *  origin commits them and the mirror fetches again. Each round prints the
+ *  size of the pack fetch sends and the time it takes, next to the size of
+ *  the origin's objects directory and the time a plain copy of it takes.
+ *  The pack grows with the new commits, while the copy grows with the
+ *  whole history.
+ *
+ *  Usage: TransferBenchmark [FILES] [HISTORY] [CHANGES]
+ *  CHANGES is the number of files each commit changes.
+ *  @author Lyrine Yang
+ */
+public class TransferBenchmark {
+
+    private static final int FILE_SIZE = 4096;
+    private static final int[] NEW_COMMITS = {1, 10, 100};
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int history = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int changes = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        Path work = Files.createTempDirectory("gitlet-transfer");
+        try {
+            run(work, files, history, changes);
+        } finally {
+            delete(work);
+        }
+    }
+
+    private static void run(Path work, int files, int history, int changes)
+            throws IOException {
+        Random random = new Random(42);
+        File originDir = Files.createDirectory(work.resolve("origin")).toFile();
+        File mirrorDir = Files.createDirectory(work.resolve("mirror")).toFile();
+        GitletRepository origin = new GitletRepository(originDir);
+        GitletRepository mirror = new GitletRepository(mirrorDir);
+        origin.init();
+        origin.beginBulkImport();
+        for (int i = 0; i < files; i += 1) {
+            writeFile(originDir, i, random);
+            origin.add(fileName(i));
+        }
+        origin.commit("files");
+        commit(origin, originDir, history, files, changes, random);
+        origin.endBulkImport();
+
+        File originGitlet = new File(originDir, ".gitlet");
+        mirror.init();
+        mirror.addRemote("origin", originGitlet.getPath());
+        mirror.fetch("origin", "master");
+
+        System.out.printf("%d files, %d commits of history, %d files changed per commit%n",
+                files, history + 1, changes);
+        System.out.printf("%12s %12s %14s %10s %16s %10s%n", "new commits", "pack objects",
+                "pack bytes", "fetch ms", "objects dir", "copy ms");
+        for (int newCommits : NEW_COMMITS) {
+            commit(origin, originDir, newCommits, files, changes, random);
+            String headID = new Refs(originGitlet).read("master");
+            Pack.Contents missing = Pack.negotiate(originGitlet, headID,
+                    new File(mirrorDir, ".gitlet"));
+            CountingOutputStream pack = new CountingOutputStream();
+            Pack.write(originGitlet, missing, pack);
+
+            long start = System.nanoTime();
+            mirror.fetch("origin", "master");
+            long fetchMillis = (System.nanoTime() - start) / 1_000_000;
+
+            Path copy = work.resolve("copy");
+            start = System.nanoTime();
+            long objectsBytes = copy(originGitlet.toPath().resolve("objects"), copy);
+            long copyMillis = (System.nanoTime() - start) / 1_000_000;
+            delete(copy);
+
+            System.out.printf("%12d %12d %14d %10d %16d %10d%n", newCommits, missing.size(),
+                    pack.count, fetchMillis, objectsBytes, copyMillis);
+        }
+    }
+
+    /** Make COUNT commits in REPOSITORY, each rewriting CHANGES random files. */
+    private static void commit(GitletRepository repository, File dir, int count, int files,
+                               int changes, Random random) throws IOException {
+        for (int c = 0; c < count; c += 1) {
+            for (int i = 0; i < changes; i += 1) {
+                int file = random.nextInt(files);
+                writeFile(dir, file, random);
+                repository.add(fileName(file));
+            }
+            repository.commit("change " + random.nextLong());
+        }
+    }
+
+    private static String fileName(int file) {
+        return "dir" + file % 10 + "/file" + file;
+    }
+
+    private static void writeFile(File dir, int file, Random random) throws IOException {
+        byte[] content = new byte[FILE_SIZE];
+        random.nextBytes(content);
+        Path path = dir.toPath().resolve(fileName(file));
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    /** Copy the tree FROM to TO, returning the bytes of its files. */
+    private static long copy(Path from, Path to) throws IOException {
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path target = to.resolve(from.relativize(path));
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(path, target);
+                    bytes += Files.size(path);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /** Counts the bytes written to it and drops them. */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count += 1;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
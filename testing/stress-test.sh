@@ -0,0 +1,117 @@
+#!/bin/bash
+# Multi-process stress test of the writer lock.
+#
+# Usage: stress-test.sh [WRITERS] [COMMITS]
+#
+# Starts WRITERS processes (default 8) which each make COMMITS commits
+# (default 5) to one repository at once, while readers run log, status and
+# fsck in a loop. Every writer owns one file and rewrites it before each
+# add and commit, so it always has a change to commit. Since the staging
+# area is shared, another writer's commit may take that change first; the
+# writer then rewrites its file and tries again until a commit of its own
+# succeeds. Afterwards the log must hold exactly the initial commit and
+# one commit per writer and round, each writer's file in the head commit
+# must hold what it last wrote, the staging area must be empty, master
+# must be the only branch, no process may have died with an exception,
+# and fsck must find no problem. Exits non-zero on the first failed check.
+
+set -u
+WRITERS=${1:-8}
+COMMITS=${2:-5}
+# a writer gives up after this many tries of one commit
+TRIES=100
+SRC=$(cd "$(dirname "$0")/../gitlet" && pwd)
+WORK=$(mktemp -d)
+if [ -n "${KEEP:-}" ]; then echo "keeping $WORK"; else trap 'rm -rf "$WORK"' EXIT; fi
+
+mkdir -p "$WORK/classes" "$WORK/repo" "$WORK/out"
+javac -nowarn -d "$WORK/classes" "$SRC"/*.java || exit 1
+G="java -cp $WORK/classes gitlet.Main"
+cd "$WORK/repo" || exit 1
+$G init
+
+fail() {
+    echo "FAIL: $*"
+    exit 1
+}
+
+writer() {
+    local i=$1 j try out
+    for ((j = 0; j < COMMITS; j += 1)); do
+        for ((try = 0; try < TRIES; try += 1)); do
+            echo "writer $i commit $j try $try" > "w$i.txt"
+            cp "w$i.txt" "$WORK/out/last$i"
+            out=$($G add "w$i.txt" 2>&1)
+            echo "$out" >> "$WORK/out/writer$i"
+            out=$($G commit "writer $i commit $j" 2>&1)
+            echo "$out" >> "$WORK/out/writer$i"
+            if [ -z "$out" ]; then
+                echo ok >> "$WORK/out/committed"
+                break
+            fi
+            # another writer committed the change first
+            [ "$out" = "No changes added to the commit." ] || break
+        done
+    done
+}
+
+reader() {
+    local i=$1
+    while [ ! -e "$WORK/out/done" ]; do
+        { $G log; $G status; $G fsck; } >> "$WORK/out/reader$i" 2>&1
+    done
+}
+
+for ((r = 0; r < 2; r += 1)); do
+    reader $r &
+    READERS+=" $!"
+done
+PIDS=""
+for ((i = 0; i < WRITERS; i += 1)); do
+    writer $i &
+    PIDS+=" $!"
+done
+wait $PIDS
+touch "$WORK/out/done"
+wait $READERS
+
+if grep -l "Exception\|at gitlet\." "$WORK"/out/* > /dev/null 2>&1; then
+    grep -h -m 5 "Exception\|at gitlet\." "$WORK"/out/*
+    fail "a process died with an exception"
+fi
+
+EXPECTED=$((WRITERS * COMMITS))
+COMMITTED=$(cat "$WORK/out/committed" 2>/dev/null | wc -l)
+[ "$COMMITTED" -eq "$EXPECTED" ] \
+    || fail "$COMMITTED of $EXPECTED commits succeeded within $TRIES tries each"
+
+LOG=$($G log)
+LOGGED=$(grep -c '^commit' <<< "$LOG")
+[ "$LOGGED" -eq $((EXPECTED + 1)) ] \
+    || fail "$EXPECTED commits succeeded but the log holds $LOGGED"
+for ((i = 0; i < WRITERS; i += 1)); do
+    for ((j = 0; j < COMMITS; j += 1)); do
+        [ "$(grep -cx "writer $i commit $j" <<< "$LOG")" -eq 1 ] \
+            || fail "the log does not hold writer $i commit $j exactly once"
+    done
+done
+
+STATUS=$($G status)
+# the lines of one section of status, without its heading
+section() {
+    sed -n "/^=== $1 ===\$/,/^\$/p" <<< "$STATUS" | sed '1d;/^$/d'
+}
+[ "$(section Branches)" = "*master" ] || fail "master is not the only branch"
+[ -z "$(section "Staged Files")" ] || fail "files are still staged"
+
+rm -f w*.txt
+for ((i = 0; i < WRITERS; i += 1)); do
+    $G checkout -- "w$i.txt" > /dev/null
+    cmp -s "w$i.txt" "$WORK/out/last$i" \
+        || fail "w$i.txt in the head commit is not what writer $i last wrote"
+done
+
+PROBLEMS=$($G fsck | grep -v '^Checked')
+[ -z "$PROBLEMS" ] || fail "fsck: $PROBLEMS"
+
+echo "OK: $WRITERS writers, $COMMITTED commits, $LOGGED in the log, fsck clean."